@@ -0,0 +1,15 @@
+-- Update for write-through mirror consistency
+-- dns_records.version：Cloudflare modified_on 的毫秒时间戳，写入镜像时只接受不更旧的版本，
+--   避免变更前已拉取的同步分页覆盖变更后的结果；为空表示旧数据，下次写入直接覆盖
+-- dns_record_tombstones：已删除记录的 Cloudflare ID，避免删除前已拉取的同步分页把记录写回；
+--   全量同步成功后清理早于本轮的墓碑
+
+ALTER TABLE dns_records ADD COLUMN version BIGINT NULL AFTER content_hash;
+
+CREATE TABLE IF NOT EXISTS dns_record_tombstones (
+	zone_id BIGINT NOT NULL,
+	cf_record_id VARCHAR(128) NOT NULL,
+	deleted_gen BIGINT NOT NULL,
+	PRIMARY KEY (zone_id, cf_record_id),
+	INDEX idx_dns_record_tombstones_gen (zone_id, deleted_gen)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,4 @@
+-- Update for batched domain availability lookup
+-- 域名搜索与申请按完整域名查询 user_domains（PENDING 申请视为占用），原有唯一键以 user_id 开头无法使用
+
+ALTER TABLE user_domains ADD INDEX idx_user_domains_full_domain (full_domain);
@@ -0,0 +1,5 @@
+-- Update for the in-memory occupied name index
+-- 名称索引每隔几秒按 updated_at 增量加载 dns_records 与 PENDING 申请
+
+ALTER TABLE dns_records ADD INDEX idx_dns_records_updated_at (updated_at);
+ALTER TABLE user_domains ADD INDEX idx_user_domains_updated_at (updated_at);
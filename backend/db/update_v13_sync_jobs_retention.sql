@@ -0,0 +1,4 @@
+-- Update for sync_jobs retention
+-- 每小时按 created_at 删除已结束的历史同步记录（各 zone 最近一次成功的记录保留）
+
+ALTER TABLE sync_jobs ADD INDEX idx_sync_created (created_at);
@@ -0,0 +1,9 @@
+-- Update for deferred release refunds
+-- 释放子域名时 user_domains 先标记为 RELEASING，Cloudflare 上的记录删除成功后才删除该行并返还积分；
+-- 释放最终失败时标记为 FAILED（原因见 dns_error），可由用户再次释放或管理员重试。
+-- dns_outbox.user_domain_id：申请最终失败时按它取消同一域名其后排队的修改/释放
+
+ALTER TABLE user_domains
+MODIFY COLUMN status ENUM('ACTIVE','PENDING','FAILED','REVOKED','RELEASING') DEFAULT 'ACTIVE';
+
+ALTER TABLE dns_outbox ADD INDEX idx_dns_outbox_user_domain (user_domain_id, status);
@@ -0,0 +1,5 @@
+-- Update for dns_outbox claim fencing
+-- 领取时写入 lock_token，执行期间按它续期 locked_at，结束时按它条件更新：
+-- 被 releaseStale 放回并由其他执行方重新领取后，旧执行方的结果不会再提交
+
+ALTER TABLE dns_outbox ADD COLUMN lock_token VARCHAR(36) NULL AFTER locked_at;
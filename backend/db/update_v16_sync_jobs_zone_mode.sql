@@ -0,0 +1,4 @@
+-- Update for sync_jobs.sync_mode of zone-list jobs
+-- zone 列表同步（ZONES）没有同步模式，此前写成了 INCREMENTAL；清空后不再与 DNS 记录同步混在一起统计与保留
+
+UPDATE sync_jobs SET sync_mode = NULL WHERE job_type = 'ZONES';
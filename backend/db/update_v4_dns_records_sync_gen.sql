@@ -0,0 +1,6 @@
+-- Update for set-based stale-record cleanup during DNS record sync
+-- 每轮同步写入的记录带上本轮代次，结束后按 zone 一次性删除代次更早的记录
+
+ALTER TABLE dns_records
+ADD COLUMN sync_gen BIGINT NULL AFTER proxied,
+ADD INDEX idx_dns_records_zone_gen (zone_id, sync_gen);
@@ -0,0 +1,12 @@
+-- Update for incremental DNS record sync
+-- sync_jobs 记录每次同步的模式、统计与 Cloudflare modified_on 水位线，增量同步据此只写入变化的记录
+
+ALTER TABLE sync_jobs
+ADD COLUMN sync_mode ENUM('FULL','INCREMENTAL') DEFAULT 'FULL' AFTER status,
+ADD COLUMN upserted INT DEFAULT 0 AFTER message,
+ADD COLUMN deleted INT DEFAULT 0 AFTER upserted,
+ADD COLUMN modified_watermark DATETIME(3) NULL AFTER deleted,
+ADD COLUMN started_at TIMESTAMP NULL AFTER modified_watermark,
+ADD COLUMN finished_at TIMESTAMP NULL AFTER started_at,
+ADD COLUMN duration_ms BIGINT NULL AFTER finished_at,
+ADD INDEX idx_sync_zone_type_status (zone_id, job_type, status);
@@ -0,0 +1,7 @@
+-- Update for skipping unchanged rows during DNS record sync
+-- dns_records.content_hash：单条记录内容哈希，只有哈希变化的记录才会被重写
+-- zones.records_fingerprint：上次全量同步时整个 zone 的记录指纹，一致时跳过清理
+
+ALTER TABLE dns_records ADD COLUMN content_hash BIGINT NULL AFTER sync_gen;
+
+ALTER TABLE zones ADD COLUMN records_fingerprint VARCHAR(64) NULL AFTER synced_at;
@@ -0,0 +1,11 @@
+-- Update for scheduled / admin-triggered background sync jobs
+-- zone_id 为空的 sync_jobs 行表示一次批量任务（同步账户下的 zones，或同步所有已启用 zone 的 DNS 记录），
+-- total/done/failed 为任务进度；单个 zone 的同步仍各自写一行
+
+ALTER TABLE sync_jobs
+ADD COLUMN cf_account_id BIGINT NULL AFTER zone_id,
+ADD COLUMN triggered_by VARCHAR(32) NULL AFTER sync_mode,
+ADD COLUMN total INT NULL AFTER deleted,
+ADD COLUMN done INT NULL AFTER total,
+ADD COLUMN failed INT NULL AFTER done,
+ADD INDEX idx_sync_type_status (job_type, status);
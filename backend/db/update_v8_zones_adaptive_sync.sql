@@ -0,0 +1,10 @@
+-- Update for adaptive per-zone sync frequency
+-- sync_interval_sec：当前同步间隔，有变更时缩短、无变更时指数退避（上下限见 sync.adaptive.*）
+-- next_sync_at：定时同步只处理到期的 zone；为空表示尽快同步
+-- pending_changes：上次同步以来用户在本地申请/修改/释放子域名的次数
+
+ALTER TABLE zones
+ADD COLUMN sync_interval_sec INT NULL AFTER records_fingerprint,
+ADD COLUMN next_sync_at DATETIME NULL AFTER sync_interval_sec,
+ADD COLUMN pending_changes INT NOT NULL DEFAULT 0 AFTER next_sync_at,
+ADD INDEX idx_zones_next_sync (enabled, next_sync_at);
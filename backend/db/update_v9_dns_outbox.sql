@@ -0,0 +1,30 @@
+-- Update for transactional outbox of DNS mutations
+-- 用户申请/修改/释放子域名时，在扣返积分、写 user_domains 的同一个事务里写入一条 dns_outbox，
+-- 由后台 DnsOutboxWorker 异步应用到 Cloudflare 并更新本地镜像。
+-- records：该名称在 Cloudflare 上期望的记录集合（Cloudflare 记录 JSON 数组，释放时为 []），重复应用结果相同
+-- points：申请时扣除的积分，最终失败时据此返还
+
+CREATE TABLE IF NOT EXISTS dns_outbox (
+	id BIGINT AUTO_INCREMENT PRIMARY KEY,
+	op VARCHAR(16) NOT NULL COMMENT 'APPLY / UPDATE / RELEASE',
+	zone_id BIGINT NOT NULL,
+	name VARCHAR(255) NOT NULL,
+	user_id BIGINT,
+	user_domain_id BIGINT,
+	records TEXT NOT NULL,
+	points INT NOT NULL DEFAULT 0,
+	status VARCHAR(16) NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING / RUNNING / DONE / FAILED',
+	attempts INT NOT NULL DEFAULT 0,
+	next_attempt_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	locked_at DATETIME NULL,
+	last_error VARCHAR(1000),
+	created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+	updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+	INDEX idx_dns_outbox_due (status, next_attempt_at),
+	INDEX idx_dns_outbox_name (zone_id, name, status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- user_domains.status：PENDING 表示变更尚未应用到 Cloudflare，FAILED 表示最终失败（原因见 dns_error）
+ALTER TABLE user_domains
+MODIFY COLUMN status ENUM('ACTIVE','PENDING','FAILED','REVOKED') DEFAULT 'ACTIVE',
+ADD COLUMN dns_error VARCHAR(500) NULL AFTER status;
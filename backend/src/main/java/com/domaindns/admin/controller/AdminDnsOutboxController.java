@@ -0,0 +1,57 @@
+package com.domaindns.admin.controller;
+
+import com.domaindns.auth.service.JwtService;
+import com.domaindns.common.ApiResponse;
+import com.domaindns.user.service.DnsOutboxService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/dns-outbox")
+public class AdminDnsOutboxController {
+    private final DnsOutboxService outboxService;
+    private final JwtService jwtService;
+
+    public AdminDnsOutboxController(DnsOutboxService outboxService, JwtService jwtService) {
+        this.outboxService = outboxService;
+        this.jwtService = jwtService;
+    }
+
+    // 待应用 / 失败的 DNS 变更，status 为空时返回全部
+    @GetMapping
+    public ApiResponse<Map<String, Object>> list(@RequestHeader("Authorization") String authorization,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "page", defaultValue = "1") Integer page,
+            @RequestParam(value = "size", defaultValue = "20") Integer size) {
+        validateAdminAuth(authorization);
+        return ApiResponse.ok(outboxService.list(status, page, size));
+    }
+
+    // 重新执行失败的修改 / 释放
+    @PostMapping("/{id}/retry")
+    public ApiResponse<Map<String, Object>> retry(@RequestHeader("Authorization") String authorization,
+            @PathVariable("id") Long id) {
+        validateAdminAuth(authorization);
+        outboxService.retry(id);
+        return ApiResponse.ok(Map.of("status", "pending"));
+    }
+
+    private void validateAdminAuth(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            throw new RuntimeException("未登录");
+        }
+        String token = authorization.substring(7);
+        try {
+            Jws<Claims> jws = jwtService.parse(token);
+            String role = jws.getBody().get("role", String.class);
+            if (!"ADMIN".equals(role)) {
+                throw new RuntimeException("权限不足，需要管理员权限");
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Token无效或已过期");
+        }
+    }
+}
@@ -5,6 +5,8 @@ import com.domaindns.auth.mapper.UserMapper;
 import com.domaindns.cf.mapper.ZoneMapper;
 import com.domaindns.cf.mapper.DnsRecordMapper;
 import com.domaindns.user.mapper.PointsMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
@@ -18,6 +20,7 @@ import java.util.concurrent.TimeUnit;
 
 @Service
 public class StatsService {
+    private static final Logger log = LoggerFactory.getLogger(StatsService.class);
 
     @Autowired
     private AdminUserMapper adminUserMapper;
@@ -38,7 +41,7 @@ public class StatsService {
     private RedisTemplate<String, Object> redisTemplate;
 
     @Autowired
-    private com.domaindns.cf.service.DnsRecordService dnsRecordService;
+    private com.domaindns.cf.service.SyncJobService syncJobService;
 
     // Redis缓存键前缀
     private static final String CACHE_PREFIX = "stats:";
@@ -472,28 +475,14 @@ public class StatsService {
     }
 
     /**
-     * 同步所有zone的DNS记录
+     * 提交同步所有zone的DNS记录的后台任务，不等待完成
      */
     private void syncAllZonesDnsRecords() {
         try {
-            // 获取所有启用的zone
-            List<com.domaindns.cf.model.Zone> zones = zoneMapper.list(1, null, null);
-            System.out.println("找到 " + zones.size() + " 个启用的zone，开始同步DNS记录...");
-
-            int syncedCount = 0;
-            for (com.domaindns.cf.model.Zone zone : zones) {
-                try {
-                    dnsRecordService.syncZoneRecords(zone.getId());
-                    syncedCount++;
-                    System.out.println("已同步zone: " + zone.getName() + " (ID: " + zone.getId() + ")");
-                } catch (Exception e) {
-                    System.err.println("同步zone " + zone.getName() + " 的DNS记录失败: " + e.getMessage());
-                }
-            }
-
-            System.out.println("DNS记录同步完成，共同步了 " + syncedCount + " 个zone");
+            Long jobId = syncJobService.submitDnsRecords("STATS");
+            log.info("已提交DNS记录同步任务: {}", jobId);
         } catch (Exception e) {
-            System.err.println("同步DNS记录时发生错误: " + e.getMessage());
+            log.warn("提交DNS记录同步任务时发生错误: {}", e.getMessage());
         }
     }
 }
\ No newline at end of file
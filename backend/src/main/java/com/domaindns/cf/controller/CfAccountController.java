@@ -5,6 +5,8 @@ import com.domaindns.cf.dto.CfAccountDtos.CreateReq;
 import com.domaindns.cf.dto.CfAccountDtos.ItemResp;
 import com.domaindns.cf.dto.CfAccountDtos.UpdateReq;
 import com.domaindns.cf.service.CfAccountService;
+import com.domaindns.cf.service.CfApiUsage;
+import com.domaindns.cf.service.CfCircuitBreaker;
 import com.domaindns.common.ApiResponse;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
@@ -20,10 +22,15 @@ import java.util.Map;
 public class CfAccountController {
     private final CfAccountService service;
     private final JwtService jwtService;
+    private final CfCircuitBreaker breaker;
+    private final CfApiUsage usage;
 
-    public CfAccountController(CfAccountService service, JwtService jwtService) {
+    public CfAccountController(CfAccountService service, JwtService jwtService, CfCircuitBreaker breaker,
+            CfApiUsage usage) {
         this.service = service;
         this.jwtService = jwtService;
+        this.breaker = breaker;
+        this.usage = usage;
     }
 
     @PostMapping
@@ -93,6 +100,22 @@ public class CfAccountController {
         return ApiResponse.ok(m);
     }
 
+    // 各账户的 Cloudflare 熔断状态（本节点），未出现过故障的账户不在列表中
+    @GetMapping("/breakers")
+    public ApiResponse<List<Map<String, Object>>> breakers(@RequestHeader("Authorization") String authorization) {
+        // 验证管理员权限
+        validateAdminAuth(authorization);
+        return ApiResponse.ok(breaker.snapshot());
+    }
+
+    // 各账户最近 5 分钟的 Cloudflare 请求量与额度占比
+    @GetMapping("/usage")
+    public ApiResponse<List<Map<String, Object>>> usage(@RequestHeader("Authorization") String authorization) {
+        // 验证管理员权限
+        validateAdminAuth(authorization);
+        return ApiResponse.ok(usage.snapshot());
+    }
+
     // 验证管理员权限
     private void validateAdminAuth(String authorization) {
         if (authorization == null || !authorization.startsWith("Bearer ")) {
@@ -1,11 +1,14 @@
 package com.domaindns.cf.controller;
 
 import com.domaindns.auth.service.JwtService;
+import com.domaindns.cf.dto.SyncDtos.ZoneSyncResult;
+import com.domaindns.cf.service.CfApiUsage;
 import com.domaindns.cf.service.DnsRecordService;
 import com.domaindns.common.ApiResponse;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -21,12 +24,11 @@ public class DnsRecordController {
     }
 
     @PostMapping("/sync-records")
-    public ApiResponse<Void> sync(@RequestHeader("Authorization") String authorization,
+    public Mono<ApiResponse<ZoneSyncResult>> sync(@RequestHeader("Authorization") String authorization,
             @PathVariable("zoneId") Long zoneDbId) {
         // 验证管理员权限
         validateAdminAuth(authorization);
-        service.syncZoneRecords(zoneDbId);
-        return ApiResponse.ok(null);
+        return service.syncZoneRecordsAsync(zoneDbId).map(ApiResponse::ok);
     }
 
     @GetMapping("/records")
@@ -41,32 +43,31 @@ public class DnsRecordController {
     }
 
     @PostMapping("/records")
-    public ApiResponse<Void> create(@RequestHeader("Authorization") String authorization,
-            @PathVariable("zoneId") Long zoneDbId, @RequestBody String body) throws Exception {
+    public Mono<ApiResponse<Void>> create(@RequestHeader("Authorization") String authorization,
+            @PathVariable("zoneId") Long zoneDbId, @RequestBody String body) {
         // 验证管理员权限
         validateAdminAuth(authorization);
-        service.create(zoneDbId, body);
-        return ApiResponse.ok(null);
+        return CfApiUsage.withFeature(service.createAsync(zoneDbId, body), CfApiUsage.FEATURE_ADMIN)
+                .thenReturn(ApiResponse.<Void>ok(null));
     }
 
     @PutMapping("/records/{recordId}")
-    public ApiResponse<Void> update(@RequestHeader("Authorization") String authorization,
+    public Mono<ApiResponse<Void>> update(@RequestHeader("Authorization") String authorization,
             @PathVariable("zoneId") Long zoneDbId, @PathVariable String recordId,
-            @RequestBody String body) throws Exception {
+            @RequestBody String body) {
         // 验证管理员权限
         validateAdminAuth(authorization);
-        service.update(zoneDbId, recordId, body);
-        return ApiResponse.ok(null);
+        return CfApiUsage.withFeature(service.updateAsync(zoneDbId, recordId, body), CfApiUsage.FEATURE_ADMIN)
+                .thenReturn(ApiResponse.<Void>ok(null));
     }
 
     @DeleteMapping("/records/{recordId}")
-    public ApiResponse<Void> delete(@RequestHeader("Authorization") String authorization,
-            @PathVariable("zoneId") Long zoneDbId, @PathVariable String recordId)
-            throws Exception {
+    public Mono<ApiResponse<Void>> delete(@RequestHeader("Authorization") String authorization,
+            @PathVariable("zoneId") Long zoneDbId, @PathVariable String recordId) {
         // 验证管理员权限
         validateAdminAuth(authorization);
-        service.delete(zoneDbId, recordId);
-        return ApiResponse.ok(null);
+        return CfApiUsage.withFeature(service.deleteAsync(zoneDbId, recordId), CfApiUsage.FEATURE_ADMIN)
+                .thenReturn(ApiResponse.<Void>ok(null));
     }
 
     // 验证管理员权限
@@ -0,0 +1,58 @@
+package com.domaindns.cf.controller;
+
+import com.domaindns.auth.service.JwtService;
+import com.domaindns.cf.model.SyncJob;
+import com.domaindns.cf.service.SyncJobService;
+import com.domaindns.common.ApiResponse;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/sync-jobs")
+public class SyncJobController {
+    private final SyncJobService service;
+    private final JwtService jwtService;
+
+    public SyncJobController(SyncJobService service, JwtService jwtService) {
+        this.service = service;
+        this.jwtService = jwtService;
+    }
+
+    // 最近的后台同步任务
+    @GetMapping
+    public ApiResponse<List<SyncJob>> list(@RequestHeader("Authorization") String authorization,
+            @RequestParam(value = "limit", defaultValue = "20") Integer limit) {
+        // 验证管理员权限
+        validateAdminAuth(authorization);
+        return ApiResponse.ok(service.recent(limit));
+    }
+
+    // 单个任务的状态与进度
+    @GetMapping("/{id}")
+    public ApiResponse<SyncJob> get(@RequestHeader("Authorization") String authorization,
+            @PathVariable("id") Long id) {
+        // 验证管理员权限
+        validateAdminAuth(authorization);
+        return ApiResponse.ok(service.get(id));
+    }
+
+    // 验证管理员权限
+    private void validateAdminAuth(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            throw new RuntimeException("未登录");
+        }
+        String token = authorization.substring(7);
+        try {
+            Jws<Claims> jws = jwtService.parse(token);
+            String role = jws.getBody().get("role", String.class);
+            if (!"ADMIN".equals(role)) {
+                throw new RuntimeException("权限不足，需要管理员权限");
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Token无效或已过期");
+        }
+    }
+}
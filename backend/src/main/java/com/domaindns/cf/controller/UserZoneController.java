@@ -1,49 +1,49 @@
 package com.domaindns.cf.controller;
 
-import com.domaindns.cf.mapper.DnsRecordMapper;
+import com.domaindns.cf.dto.ZoneDtos.PublicItem;
 import com.domaindns.cf.model.Zone;
-import com.domaindns.cf.service.ZoneService;
+import com.domaindns.cf.service.DomainSearchService;
+import com.domaindns.cf.service.ZoneRegistry;
 import com.domaindns.common.ApiResponse;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
 public class UserZoneController {
-    private final ZoneService zoneService;
-    private final DnsRecordMapper dnsRecordMapper;
+    private final ZoneRegistry zoneRegistry;
+    private final DomainSearchService searchService;
 
-    public UserZoneController(ZoneService zoneService, DnsRecordMapper dnsRecordMapper) {
-        this.zoneService = zoneService;
-        this.dnsRecordMapper = dnsRecordMapper;
+    public UserZoneController(ZoneRegistry zoneRegistry, DomainSearchService searchService) {
+        this.zoneRegistry = zoneRegistry;
+        this.searchService = searchService;
     }
 
     @GetMapping("/zones")
-    public ApiResponse<List<Zone>> listEnabledZones(@RequestParam(value = "name", required = false) String name) {
-        return ApiResponse.ok(zoneService.list(1, name, null));
+    public ApiResponse<List<PublicItem>> listEnabledZones(@RequestParam(value = "name", required = false) String name) {
+        return ApiResponse.ok(zoneRegistry.enabled(name).stream().map(this::toItem).collect(Collectors.toList()));
     }
 
-    // 公共搜索：输入子域名前缀，返回所有可用 zone 的可注册完整域名
+    // 公共搜索：输入子域名前缀，返回所有可用 zone 的可注册完整域名；被占用时附带最多 suggest 个备选
     @GetMapping("/domains/search")
-    public ApiResponse<List<Map<String, Object>>> searchDomains(@RequestParam("prefix") String prefix) {
-        List<Zone> zones = zoneService.list(1, null, null);
-        ArrayList<Map<String, Object>> result = new ArrayList<>();
-        if (prefix == null || prefix.isEmpty())
-            return ApiResponse.ok(result);
-        for (Zone z : zones) {
-            String full = prefix + "." + z.getName();
-            boolean exists = dnsRecordMapper.countByZoneAndName(z.getId(), full) > 0;
-            Map<String, Object> item = new HashMap<>();
-            item.put("domain", full);
-            item.put("available", !exists);
-            if (exists)
-                item.put("reason", "occupied");
-            result.add(item);
-        }
-        return ApiResponse.ok(result);
+    public ApiResponse<List<Map<String, Object>>> searchDomains(@RequestParam("prefix") String prefix,
+            @RequestParam(value = "suggest", required = false) Integer suggest) {
+        return ApiResponse.ok(searchService.search(prefix, suggest));
+    }
+
+    private PublicItem toItem(Zone z) {
+        PublicItem i = new PublicItem();
+        i.id = z.getId();
+        i.cfAccountId = z.getCfAccountId();
+        i.zoneId = z.getZoneId();
+        i.name = z.getName();
+        i.status = z.getStatus();
+        i.enabled = z.getEnabled();
+        i.syncedAt = z.getSyncedAt();
+        i.createdAt = z.getCreatedAt();
+        return i;
     }
 }
@@ -3,6 +3,7 @@ package com.domaindns.cf.controller;
 import com.domaindns.auth.service.JwtService;
 import com.domaindns.cf.model.Zone;
 import com.domaindns.cf.service.ZoneService;
+import com.domaindns.cf.service.SyncJobService;
 import com.domaindns.common.ApiResponse;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
@@ -16,22 +17,34 @@ import java.util.Map;
 @RequestMapping("/api/admin/zones")
 public class ZoneController {
     private final ZoneService service;
+    private final SyncJobService jobService;
     private final JwtService jwtService;
 
-    public ZoneController(ZoneService service, JwtService jwtService) {
+    public ZoneController(ZoneService service, SyncJobService jobService, JwtService jwtService) {
         this.service = service;
+        this.jobService = jobService;
         this.jwtService = jwtService;
     }
 
+    // 提交后台同步任务，立即返回任务 ID，进度见 /api/admin/sync-jobs/{jobId}
     @PostMapping("/sync")
-    public ApiResponse<Map<String, Integer>> sync(@RequestHeader("Authorization") String authorization,
+    public ApiResponse<Map<String, Long>> sync(@RequestHeader("Authorization") String authorization,
             @RequestBody(required = false) Map<String, Long> body) {
         // 验证管理员权限
         validateAdminAuth(authorization);
         Long accId = body != null ? body.get("cfAccountId") : null;
-        int saved = (accId == null) ? service.syncAll() : service.syncByAccount(accId);
-        Map<String, Integer> m = new HashMap<>();
-        m.put("saved", saved);
+        Map<String, Long> m = new HashMap<>();
+        m.put("jobId", jobService.submitZones(accId, "ADMIN"));
+        return ApiResponse.ok(m);
+    }
+
+    // 提交同步所有已启用 zone 的 DNS 记录的后台任务
+    @PostMapping("/sync-records")
+    public ApiResponse<Map<String, Long>> syncRecords(@RequestHeader("Authorization") String authorization) {
+        // 验证管理员权限
+        validateAdminAuth(authorization);
+        Map<String, Long> m = new HashMap<>();
+        m.put("jobId", jobService.submitDnsRecords("ADMIN"));
         return ApiResponse.ok(m);
     }
 
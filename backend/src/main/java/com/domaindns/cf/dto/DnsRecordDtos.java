@@ -12,6 +12,7 @@ public class DnsRecordDtos {
         private String content;
         private Integer ttl;
         private Integer proxied;
+        private Long version; // Cloudflare modified_on 的毫秒时间戳
         private LocalDateTime createdAt;
         private LocalDateTime updatedAt;
         private String username; // 创建该DNS记录的用户名
@@ -80,6 +81,14 @@ public class DnsRecordDtos {
             this.proxied = proxied;
         }
 
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
         public LocalDateTime getCreatedAt() {
             return createdAt;
         }
@@ -0,0 +1,41 @@
+package com.domaindns.cf.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SyncDtos {
+    // 单个 zone 的 DNS 记录同步结果
+    public static class ZoneSyncResult {
+        public Long zoneId;
+        public String zoneName;
+        public Long cfAccountId;
+        public Long jobId; // sync_jobs.id
+        public String mode; // FULL / INCREMENTAL
+        public boolean success;
+        public long durationMs;
+        public int upserted;
+        public int deleted;
+        public int skipped; // 未变化而跳过写入的记录数
+        public String error;
+        public boolean joined; // 共用了同一 zone 正在进行的同步的结果
+    }
+
+    // 一次批量同步的汇总
+    public static class SyncSummary {
+        public int zones;
+        public int succeeded;
+        public int failed;
+        public int upserted;
+        public int deleted;
+        public long durationMs;
+        public List<ZoneSyncResult> results = new ArrayList<>();
+    }
+
+    // Cloudflare 列表接口的一页，result 已解码为实体
+    public static class CfPage<T> {
+        public boolean success = true;
+        public String errors; // 原始 errors 数组 JSON
+        public int totalPages = -1; // result_info.total_pages，缺失时为 -1
+        public List<T> result = new ArrayList<>();
+    }
+}
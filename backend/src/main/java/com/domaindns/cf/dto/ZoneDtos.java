@@ -0,0 +1,17 @@
+package com.domaindns.cf.dto;
+
+import java.time.LocalDateTime;
+
+public class ZoneDtos {
+    // 公开的 zone 列表项，不含同步调度等内部字段
+    public static class PublicItem {
+        public Long id;
+        public Long cfAccountId;
+        public String zoneId;
+        public String name;
+        public String status;
+        public Integer enabled;
+        public LocalDateTime syncedAt;
+        public LocalDateTime createdAt;
+    }
+}
@@ -3,6 +3,7 @@ package com.domaindns.cf.mapper;
 import com.domaindns.cf.model.DnsRecord;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -10,6 +11,9 @@ import java.util.List;
 public interface DnsRecordMapper {
         int upsert(DnsRecord r);
 
+        // 多行 INSERT ... ON DUPLICATE KEY UPDATE，list 不能为空
+        int upsertBatch(@Param("list") List<DnsRecord> list);
+
         List<DnsRecord> listByZone(@Param("zoneId") Long zoneId, @Param("type") String type,
                         @Param("name") String name);
 
@@ -18,14 +22,49 @@ public interface DnsRecordMapper {
 
         int countByZoneAndName(@Param("zoneId") Long zoneId, @Param("name") String name);
 
+        // 给定完整域名中已被占用的（镜像中有记录或有 PENDING 申请），只返回 zoneId 与 name，names 不能为空
+        List<DnsRecord> findOccupiedNames(@Param("names") List<String> names);
+
+        // 流式读取占用名称（zoneId 与 name），since 为空时全量，否则只读 updated_at 不早于 since 的
+        void scanOccupiedNames(@Param("since") java.time.LocalDateTime since, ResultHandler<DnsRecord> handler);
+
+        List<DnsRecord> listOccupiedByZone(@Param("zoneId") Long zoneId);
+
+        java.time.LocalDateTime dbNow();
+
         com.domaindns.cf.model.DnsRecord findOneByZoneAndName(@Param("zoneId") Long zoneId, @Param("name") String name);
 
         List<DnsRecord> findAllByZoneAndName(@Param("zoneId") Long zoneId, @Param("name") String name);
 
         com.domaindns.cf.model.DnsRecord findById(@Param("id") Long id);
 
+        DnsRecord findByZoneAndCfRecordId(@Param("zoneId") Long zoneId, @Param("cfRecordId") String cfRecordId);
+
         int deleteByZoneAndCfRecordId(@Param("zoneId") Long zoneId, @Param("cfRecordId") String cfRecordId);
 
+        // 只查 cf_record_id、content_hash 与 version
+        List<DnsRecord> findHashesByCfIds(@Param("zoneId") Long zoneId,
+                        @Param("cfRecordIds") List<String> cfRecordIds);
+
+        int countByZone(@Param("zoneId") Long zoneId);
+
+        int touchSyncGen(@Param("zoneId") Long zoneId, @Param("cfRecordIds") List<String> cfRecordIds,
+                        @Param("syncGen") Long syncGen);
+
+        int detachStaleUserDomains(@Param("zoneId") Long zoneId, @Param("syncGen") Long syncGen);
+
+        int detachUserDomains(@Param("recordId") Long recordId);
+
+        int deleteStaleByZone(@Param("zoneId") Long zoneId, @Param("syncGen") Long syncGen);
+
+        int insertTombstone(@Param("zoneId") Long zoneId, @Param("cfRecordId") String cfRecordId,
+                        @Param("deletedGen") Long deletedGen);
+
+        // 给定 ID 中已删除（有墓碑）的部分
+        List<String> findTombstonedIds(@Param("zoneId") Long zoneId, @Param("cfRecordIds") List<String> cfRecordIds);
+
+        int purgeTombstones(@Param("zoneId") Long zoneId, @Param("beforeGen") Long beforeGen);
+
         int deleteByZoneAndName(@Param("zoneId") Long zoneId, @Param("name") String name);
 
         int countAll();
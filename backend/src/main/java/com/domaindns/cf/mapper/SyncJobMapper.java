@@ -0,0 +1,39 @@
+package com.domaindns.cf.mapper;
+
+import com.domaindns.cf.model.SyncJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface SyncJobMapper {
+    int insert(SyncJob j);
+
+    // 写入结束状态与统计
+    int finish(SyncJob j);
+
+    // PENDING -> RUNNING，返回 0 表示任务已不是 PENDING
+    int markRunning(@Param("id") Long id);
+
+    int updateProgress(@Param("id") Long id, @Param("total") Integer total, @Param("done") Integer done,
+            @Param("failed") Integer failed);
+
+    // 超过 minutes 分钟没有进展的 PENDING/RUNNING 任务（如进程重启时中断的）标记为失败
+    int failStale(@Param("minutes") long minutes);
+
+    // 删除 days 天前已结束的记录，每次最多 limit 行；保留每个 zone / 任务类型 / 模式最近一次成功的记录（增量同步的水位线）
+    int purgeFinished(@Param("days") int days, @Param("limit") int limit);
+
+    // 同类型、同账户范围内尚未结束的批量任务
+    SyncJob findActiveBatch(@Param("jobType") String jobType, @Param("cfAccountId") Long cfAccountId);
+
+    // 最近的批量任务
+    List<SyncJob> listBatches(@Param("limit") int limit);
+
+    SyncJob findById(@Param("id") Long id);
+
+    // 某 zone 最近一次成功的同步与最近一次成功的 syncMode 同步（同一条时只返回一行），一次查询取回
+    List<SyncJob> findLastSuccesses(@Param("zoneId") Long zoneId, @Param("jobType") String jobType,
+            @Param("syncMode") String syncMode);
+}
@@ -15,6 +15,15 @@ public interface ZoneMapper {
 
     int setEnabled(@Param("id") Long id, @Param("enabled") Integer enabled);
 
+    int updateRecordsFingerprint(@Param("id") Long id, @Param("fingerprint") String fingerprint);
+
+    int markChanged(@Param("id") Long id);
+
+    int updateSyncSchedule(@Param("id") Long id, @Param("changes") int changes, @Param("hotChanges") int hotChanges,
+            @Param("minSec") int minSec, @Param("maxSec") int maxSec);
+
+    List<Long> findDueIds(@Param("graceSec") int graceSec);
+
     Zone findById(@Param("id") Long id);
 
     Zone findByCfZoneId(@Param("zoneId") String zoneId);
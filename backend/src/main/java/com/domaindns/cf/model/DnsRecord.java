@@ -11,6 +11,10 @@ public class DnsRecord {
     private String content;
     private Integer ttl;
     private Integer proxied;
+    private Long syncGen; // 最近一次写入/同步的代次（毫秒时间戳），用于清理过期记录
+    private Long contentHash; // 记录内容哈希，同步时据此跳过未变化的记录
+    private Long version; // Cloudflare modified_on 的毫秒时间戳，镜像只接受不更旧的写入
+    private LocalDateTime modifiedOn; // Cloudflare 侧 modified_on（UTC），仅同步时使用，不落库
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -78,6 +82,38 @@ public class DnsRecord {
         this.proxied = proxied;
     }
 
+    public Long getSyncGen() {
+        return syncGen;
+    }
+
+    public void setSyncGen(Long syncGen) {
+        this.syncGen = syncGen;
+    }
+
+    public Long getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(Long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getModifiedOn() {
+        return modifiedOn;
+    }
+
+    public void setModifiedOn(LocalDateTime modifiedOn) {
+        this.modifiedOn = modifiedOn;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,177 @@
+package com.domaindns.cf.model;
+
+import java.time.LocalDateTime;
+
+public class SyncJob {
+    private Long id;
+    private Long zoneId; // 为空表示批量任务
+    private Long cfAccountId; // ZONES 任务只同步该账户，为空表示所有启用账户
+    private String jobType; // ZONES / DNS_RECORDS
+    private String status; // PENDING / RUNNING / SUCCESS / FAILED
+    private String syncMode; // FULL / INCREMENTAL
+    private String triggeredBy; // CRON / ADMIN / STATS
+    private String message;
+    private Integer upserted;
+    private Integer deleted;
+    private Integer total; // 批量任务进度：总数 / 已完成 / 其中失败
+    private Integer done;
+    private Integer failed;
+    private LocalDateTime modifiedWatermark; // 本轮见到的 Cloudflare modified_on 最大值（UTC）
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long durationMs;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getZoneId() {
+        return zoneId;
+    }
+
+    public void setZoneId(Long zoneId) {
+        this.zoneId = zoneId;
+    }
+
+    public String getJobType() {
+        return jobType;
+    }
+
+    public void setJobType(String jobType) {
+        this.jobType = jobType;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getSyncMode() {
+        return syncMode;
+    }
+
+    public void setSyncMode(String syncMode) {
+        this.syncMode = syncMode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Integer getUpserted() {
+        return upserted;
+    }
+
+    public void setUpserted(Integer upserted) {
+        this.upserted = upserted;
+    }
+
+    public Integer getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(Integer deleted) {
+        this.deleted = deleted;
+    }
+
+    public Long getCfAccountId() {
+        return cfAccountId;
+    }
+
+    public void setCfAccountId(Long cfAccountId) {
+        this.cfAccountId = cfAccountId;
+    }
+
+    public String getTriggeredBy() {
+        return triggeredBy;
+    }
+
+    public void setTriggeredBy(String triggeredBy) {
+        this.triggeredBy = triggeredBy;
+    }
+
+    public Integer getTotal() {
+        return total;
+    }
+
+    public void setTotal(Integer total) {
+        this.total = total;
+    }
+
+    public Integer getDone() {
+        return done;
+    }
+
+    public void setDone(Integer done) {
+        this.done = done;
+    }
+
+    public Integer getFailed() {
+        return failed;
+    }
+
+    public void setFailed(Integer failed) {
+        this.failed = failed;
+    }
+
+    public LocalDateTime getModifiedWatermark() {
+        return modifiedWatermark;
+    }
+
+    public void setModifiedWatermark(LocalDateTime modifiedWatermark) {
+        this.modifiedWatermark = modifiedWatermark;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public Long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(Long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
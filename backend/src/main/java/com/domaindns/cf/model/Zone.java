@@ -10,6 +10,10 @@ public class Zone {
     private String status;
     private Integer enabled;
     private LocalDateTime syncedAt;
+    private String recordsFingerprint; // 上次全量同步时 Cloudflare 记录集合的指纹
+    private Integer syncIntervalSec; // 自适应同步间隔（秒）
+    private LocalDateTime nextSyncAt; // 下次定时同步时间
+    private Integer pendingChanges; // 上次同步以来本地的变更次数
     private LocalDateTime createdAt;
 
     public Long getId() {
@@ -68,6 +72,14 @@ public class Zone {
         this.syncedAt = syncedAt;
     }
 
+    public String getRecordsFingerprint() {
+        return recordsFingerprint;
+    }
+
+    public void setRecordsFingerprint(String recordsFingerprint) {
+        this.recordsFingerprint = recordsFingerprint;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -75,4 +87,28 @@ public class Zone {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Integer getSyncIntervalSec() {
+        return syncIntervalSec;
+    }
+
+    public void setSyncIntervalSec(Integer syncIntervalSec) {
+        this.syncIntervalSec = syncIntervalSec;
+    }
+
+    public LocalDateTime getNextSyncAt() {
+        return nextSyncAt;
+    }
+
+    public void setNextSyncAt(LocalDateTime nextSyncAt) {
+        this.nextSyncAt = nextSyncAt;
+    }
+
+    public Integer getPendingChanges() {
+        return pendingChanges;
+    }
+
+    public void setPendingChanges(Integer pendingChanges) {
+        this.pendingChanges = pendingChanges;
+    }
 }
@@ -3,8 +3,10 @@ package com.domaindns.cf.service;
 import com.domaindns.cf.dto.CfAccountDtos.CreateReq;
 import com.domaindns.cf.dto.CfAccountDtos.ItemResp;
 import com.domaindns.cf.dto.CfAccountDtos.UpdateReq;
+import com.domaindns.cf.dto.SyncDtos.CfPage;
 import com.domaindns.cf.mapper.CfAccountMapper;
 import com.domaindns.cf.model.CfAccount;
+import com.domaindns.cf.model.Zone;
 import com.domaindns.common.SecretCrypto;
 import org.springframework.stereotype.Service;
 
@@ -47,10 +49,12 @@ public class CfAccountService {
         a.setApiKey(req.apiKey == null ? null : crypto.encrypt(req.apiKey));
         a.setEnabled(req.enabled == null ? null : (req.enabled ? 1 : 0));
         mapper.update(a);
+        client.invalidateCredentials(id);
     }
 
     public void delete(Long id) {
         mapper.delete(id);
+        client.invalidateCredentials(id);
     }
 
     public ItemResp get(Long id) {
@@ -67,18 +71,19 @@ public class CfAccountService {
         a.setId(id);
         a.setEnabled(enabled ? 1 : 0);
         mapper.update(a);
+        client.invalidateCredentials(id);
     }
 
     public boolean test(Long id) {
+        // 密钥由 CfClient 解密并缓存认证头，这里直接传库中的账户
         CfAccount a = mapper.findById(id);
-        if (a != null) {
-            a.setApiKey(crypto.decryptIfEncrypted(a.getApiKey()));
-        }
         if (a == null)
             throw new IllegalArgumentException("账户不存在");
         try {
-            client.listZones(a, 1, 1).block();
-            return true;
+            // 只取第一页的一个 zone，与同步共用流式解码
+            CfPage<Zone> p = CfApiUsage.withFeature(client.listZonePages(a, 1, 1).next(), CfApiUsage.FEATURE_TEST)
+                    .block();
+            return p != null && p.success;
         } catch (Exception e) {
             return false;
         }
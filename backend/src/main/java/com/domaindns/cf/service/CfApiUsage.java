@@ -0,0 +1,196 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.mapper.CfAccountMapper;
+import com.domaindns.cf.model.CfAccount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cloudflare API 用量计量。CfClient 每次实际发出的请求（含重试）记一次：
+ * Micrometer 计时器 cf.api.requests（标签 account / operation / feature / status，带延迟直方图，经 actuator 暴露），
+ * 同时在 Redis 中按账户累加 10 秒一桶的计数，所有节点共享，用于查看最近 5 分钟相对 Cloudflare 额度的用量。
+ * feature 表示触发请求的业务（同步、申请、修改、释放、测试连接、管理端操作），由调用方通过 withFeature 写入 Reactor Context。
+ * Redis 不可用时只丢失滚动窗口计数，不影响请求。
+ */
+@Component
+public class CfApiUsage {
+    private static final Logger log = LoggerFactory.getLogger(CfApiUsage.class);
+    private static final String CONTEXT_KEY = CfApiUsage.class.getName() + ".feature";
+    private static final String KEY_PREFIX = "cf:usage:";
+    private static final long BUCKET_SECONDS = 10;
+    private static final long WINDOW_SECONDS = 300;
+
+    public static final String FEATURE_SYNC = "sync";
+    public static final String FEATURE_APPLY = "apply";
+    public static final String FEATURE_UPDATE = "update";
+    public static final String FEATURE_RELEASE = "release";
+    public static final String FEATURE_TEST = "test";
+    public static final String FEATURE_ADMIN = "admin";
+    public static final String FEATURE_OTHER = "other";
+
+    // 计数字段为 feature|operation|status，读取时再按各维度汇总
+    private static final DefaultRedisScript<Long> INCR = new DefaultRedisScript<>(
+            "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], 1) "
+                    + "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2])) "
+                    + "return n",
+            Long.class);
+
+    private final MeterRegistry registry;
+    private final StringRedisTemplate redis;
+    private final CfAccountMapper accountMapper;
+    private final boolean histogram;
+    private final int budget;
+    private final int warnPercent;
+
+    public CfApiUsage(MeterRegistry registry, StringRedisTemplate redis, CfAccountMapper accountMapper,
+            @Value("${cf.usage.histogram:true}") boolean histogram,
+            @Value("${cf.usage.budget-per-5min:1200}") int budget,
+            @Value("${cf.usage.warn-percent:80}") int warnPercent) {
+        this.registry = registry;
+        this.redis = redis;
+        this.accountMapper = accountMapper;
+        this.histogram = histogram;
+        this.budget = Math.max(1, budget);
+        this.warnPercent = Math.max(1, Math.min(100, warnPercent));
+    }
+
+    // 标记 publisher 内发出的 Cloudflare 请求所属的业务
+    public static <T> Mono<T> withFeature(Mono<T> mono, String feature) {
+        return mono.contextWrite(ctx -> ctx.put(CONTEXT_KEY, feature));
+    }
+
+    public static <T> Flux<T> withFeature(Flux<T> flux, String feature) {
+        return flux.contextWrite(ctx -> ctx.put(CONTEXT_KEY, feature));
+    }
+
+    // 为单次请求计量；request 每被订阅一次（重试）记一次
+    <T> Mono<T> meter(CfAccount acc, String operation, Mono<T> request) {
+        return Mono.deferContextual(ctx -> {
+            String feature = feature(ctx);
+            long start = System.nanoTime();
+            return request
+                    .doOnSuccess(v -> record(acc, operation, feature, "2xx", start))
+                    .doOnError(e -> record(acc, operation, feature, status(e), start))
+                    .doOnCancel(() -> record(acc, operation, feature, "cancelled", start));
+        });
+    }
+
+    private static String feature(ContextView ctx) {
+        return ctx.getOrDefault(CONTEXT_KEY, FEATURE_OTHER);
+    }
+
+    private static String status(Throwable e) {
+        if (e instanceof WebClientResponseException wex)
+            return String.valueOf(wex.getStatusCode().value());
+        if (e instanceof TimeoutException)
+            return "timeout";
+        if (e instanceof WebClientRequestException)
+            return "io_error";
+        return "error";
+    }
+
+    private void record(CfAccount acc, String operation, String feature, String status, long startNanos) {
+        String account = acc.getId() == null ? "none" : String.valueOf(acc.getId());
+        Timer.builder("cf.api.requests")
+                .description("Cloudflare API 请求（每次尝试）")
+                .tags("account", account, "operation", operation, "feature", feature, "status", status)
+                .publishPercentileHistogram(histogram)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (acc.getId() == null)
+            return;
+        // Redis 计数不阻塞请求线程
+        long bucket = System.currentTimeMillis() / 1000 / BUCKET_SECONDS;
+        String field = feature + "|" + operation + "|" + status;
+        Schedulers.boundedElastic().schedule(() -> {
+            try {
+                redis.execute(INCR, Collections.singletonList(KEY_PREFIX + acc.getId() + ":" + bucket), field,
+                        String.valueOf(WINDOW_SECONDS + BUCKET_SECONDS * 2));
+            } catch (Exception e) {
+                log.debug("Cloudflare 用量计数写入失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 各账户最近 5 分钟（10 秒粒度，含当前未满的一桶）的请求数、占额度（cf.usage.budget-per-5min）的比例，
+     * 以及按业务、接口、状态的分布。超过 cf.usage.warn-percent 时 nearLimit 为 true。
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<CfAccount> accounts = accountMapper.findAll(null);
+        long current = System.currentTimeMillis() / 1000 / BUCKET_SECONDS;
+        int buckets = (int) (WINDOW_SECONDS / BUCKET_SECONDS);
+        List<byte[]> keys = new ArrayList<>();
+        for (CfAccount a : accounts) {
+            for (int i = 0; i < buckets; i++)
+                keys.add((KEY_PREFIX + a.getId() + ":" + (current - i)).getBytes(StandardCharsets.UTF_8));
+        }
+        List<Object> hashes = keys.isEmpty() ? List.of() : redis.executePipelined((RedisCallback<Object>) conn -> {
+            for (byte[] k : keys)
+                conn.hashCommands().hGetAll(k);
+            return null;
+        });
+
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (int ai = 0; ai < accounts.size(); ai++) {
+            CfAccount a = accounts.get(ai);
+            long total = 0;
+            Map<String, Long> byFeature = new TreeMap<>();
+            Map<String, Long> byOperation = new TreeMap<>();
+            Map<String, Long> byStatus = new TreeMap<>();
+            for (int i = 0; i < buckets; i++) {
+                Object h = hashes.get(ai * buckets + i);
+                if (!(h instanceof Map<?, ?> fields))
+                    continue;
+                for (Map.Entry<?, ?> e : fields.entrySet()) {
+                    String[] parts = String.valueOf(e.getKey()).split("\\|", 3);
+                    long n = Long.parseLong(String.valueOf(e.getValue()));
+                    total += n;
+                    byFeature.merge(parts[0], n, Long::sum);
+                    if (parts.length > 1)
+                        byOperation.merge(parts[1], n, Long::sum);
+                    if (parts.length > 2)
+                        byStatus.merge(parts[2], n, Long::sum);
+                }
+            }
+            double percent = Math.round(total * 1000.0 / budget) / 10.0;
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("cfAccountId", a.getId());
+            m.put("name", a.getName());
+            m.put("windowSeconds", WINDOW_SECONDS);
+            m.put("requests", total);
+            m.put("budget", budget);
+            m.put("usagePercent", percent);
+            m.put("nearLimit", percent >= warnPercent);
+            m.put("rateLimited", byStatus.getOrDefault("429", 0L));
+            m.put("byFeature", byFeature);
+            m.put("byOperation", byOperation);
+            m.put("byStatus", byStatus);
+            out.add(m);
+        }
+        return out;
+    }
+}
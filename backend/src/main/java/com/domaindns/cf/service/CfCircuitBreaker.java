@@ -0,0 +1,152 @@
+package com.domaindns.cf.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 按 Cloudflare 账户的熔断器。连续 cf.breaker.failure-threshold 次故障（超时、连接失败、5xx、429）后熔断
+ * cf.breaker.open-seconds 秒，期间该账户的请求直接抛 CfUnavailableException，不再占用线程等待；
+ * 到期后放行一个探测请求，成功则恢复，失败则继续熔断。4xx 等业务错误说明 Cloudflare 可用，不计入故障。
+ * 状态只在本节点内维护。
+ */
+@Component
+public class CfCircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(CfCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final long openMs;
+    private final Map<Long, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public CfCircuitBreaker(@Value("${cf.breaker.enabled:true}") boolean enabled,
+            @Value("${cf.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${cf.breaker.open-seconds:30}") long openSeconds) {
+        this.enabled = enabled;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMs = Math.max(1, openSeconds) * 1000;
+    }
+
+    // 发请求前调用：熔断中抛 CfUnavailableException；半开时只放行一个探测请求
+    public void check(Long accountId) {
+        if (!enabled || accountId == null)
+            return;
+        Circuit c = circuits.get(accountId);
+        if (c != null && !c.allow(openMs))
+            throw new CfUnavailableException("Cloudflare 暂时不可用，请稍后重试");
+    }
+
+    public void onSuccess(Long accountId) {
+        if (!enabled || accountId == null)
+            return;
+        Circuit c = circuits.get(accountId);
+        if (c != null && c.reset())
+            log.info("Cloudflare 账户 {} 已恢复，熔断关闭", accountId);
+    }
+
+    public void onError(Long accountId, Throwable e) {
+        if (!enabled || accountId == null)
+            return;
+        if (!isOutage(e)) {
+            // 业务错误同样说明服务可达
+            onSuccess(accountId);
+            return;
+        }
+        Circuit c = circuits.computeIfAbsent(accountId, k -> new Circuit());
+        if (c.fail(failureThreshold))
+            log.warn("Cloudflare 账户 {} 连续失败，熔断 {} 秒: {}", accountId, openMs / 1000, e.toString());
+    }
+
+    public boolean isOpen(Long accountId) {
+        Circuit c = accountId == null ? null : circuits.get(accountId);
+        return c != null && c.state() != State.CLOSED;
+    }
+
+    // 各账户当前状态，供管理端查看
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        circuits.forEach((id, c) -> out.add(c.describe(id)));
+        return out;
+    }
+
+    // 超时、连接失败、5xx 与 429 视为 Cloudflare 故障
+    static boolean isOutage(Throwable e) {
+        if (e instanceof CfUnavailableException || e instanceof TimeoutException
+                || e instanceof WebClientRequestException)
+            return true;
+        if (e instanceof WebClientResponseException wex)
+            return wex.getStatusCode().is5xxServerError() || wex.getStatusCode().value() == 429;
+        return false;
+    }
+
+    private static final class Circuit {
+        private int failures;
+        private long openedAt;
+        private boolean probing;
+
+        synchronized State state() {
+            if (openedAt == 0)
+                return State.CLOSED;
+            return probing ? State.HALF_OPEN : State.OPEN;
+        }
+
+        synchronized Map<String, Object> describe(Long id) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("cfAccountId", id);
+            m.put("state", state().name());
+            m.put("failures", failures);
+            m.put("openedAt", openedAt == 0 ? null : openedAt);
+            return m;
+        }
+
+        // 每个熔断窗口只放行一个探测请求；探测请求被取消、迟迟没有结果时，下一个窗口再放行一个
+        synchronized boolean allow(long openMs) {
+            if (openedAt == 0)
+                return true;
+            long now = System.currentTimeMillis();
+            if (now - openedAt < openMs)
+                return false;
+            openedAt = now;
+            probing = true;
+            return true;
+        }
+
+        // 返回是否由熔断恢复为正常
+        synchronized boolean reset() {
+            boolean wasOpen = openedAt != 0;
+            failures = 0;
+            openedAt = 0;
+            probing = false;
+            return wasOpen;
+        }
+
+        // 返回是否本次触发（或探测失败后重新进入）熔断
+        synchronized boolean fail(int threshold) {
+            failures++;
+            if (probing) {
+                probing = false;
+                openedAt = System.currentTimeMillis();
+                return true;
+            }
+            if (openedAt == 0 && failures >= threshold) {
+                openedAt = System.currentTimeMillis();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -1,26 +1,91 @@
 package com.domaindns.cf.service;
 
+import com.domaindns.cf.dto.SyncDtos.CfPage;
 import com.domaindns.cf.model.CfAccount;
+import com.domaindns.cf.model.DnsRecord;
+import com.domaindns.cf.model.Zone;
+import com.domaindns.cf.service.CfRequestThrottle.Lane;
 import com.domaindns.common.SecretCrypto;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+/**
+ * Cloudflare API 客户端。每个请求依次经过：账户熔断检查 -> 限流令牌 -> 带超时的 HTTP 请求；
+ * 幂等请求（GET 列表、PUT 覆盖更新）遇到超时、连接失败、5xx、429 时按指数退避加抖动重试。
+ * 熔断、超时与连接失败统一转为 CfUnavailableException，调用方无需等待默认超时。
+ * 每次实际发出的请求由 CfApiUsage 按账户、接口、业务与结果计量。
+ */
 @Component
 public class CfClient {
-    private final WebClient webClient = WebClient.builder()
-            .baseUrl("https://api.cloudflare.com/client/v4")
-            .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-            .build();
+    private final WebClient webClient;
     private final SecretCrypto crypto;
+    private final CfRequestThrottle throttle;
+    private final CfCircuitBreaker breaker;
+    private final CfApiUsage usage;
+    private final Duration requestTimeout;
+    private final int maxRetries;
+    private final Duration retryBackoff;
 
-    public CfClient(SecretCrypto crypto) {
+    public CfClient(SecretCrypto crypto, CfRequestThrottle throttle, CfCircuitBreaker breaker, CfApiUsage usage,
+            @Value("${cf.timeout.connect-ms:5000}") int connectTimeoutMs,
+            @Value("${cf.timeout.response-ms:15000}") long responseTimeoutMs,
+            @Value("${cf.timeout.request-ms:30000}") long requestTimeoutMs,
+            @Value("${cf.retry.max-attempts:2}") int maxRetries,
+            @Value("${cf.retry.backoff-ms:300}") long retryBackoffMs,
+            @Value("${cf.api-base-url:https://api.cloudflare.com/client/v4}") String baseUrl) {
         this.crypto = crypto;
+        this.throttle = throttle;
+        this.breaker = breaker;
+        this.usage = usage;
+        this.requestTimeout = Duration.ofMillis(Math.max(1, requestTimeoutMs));
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoff = Duration.ofMillis(Math.max(1, retryBackoffMs));
+        // 连接超时 + 响应超时（两次读之间的最长间隔），避免默认无限等待
+        HttpClient http = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.max(1, connectTimeoutMs))
+                .responseTimeout(Duration.ofMillis(Math.max(1, responseTimeoutMs)));
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .clientConnector(new ReactorClientHttpConnector(http))
+                .build();
     }
 
+    // 账户的认证头缓存：避免每次请求都解密 API Key。
+    // 条目记录生成时的 apiType/email/apiKey 密文，与传入账户不一致时重新生成；账户变更时由 CfAccountService 主动失效
+    private final Map<Long, CachedAuth> authCache = new ConcurrentHashMap<>();
+
     private HttpHeaders buildHeaders(CfAccount acc) {
+        if (acc.getId() == null)
+            return authHeaders(acc);
+        CachedAuth c = authCache.get(acc.getId());
+        if (c == null || !c.matches(acc)) {
+            c = new CachedAuth(acc, HttpHeaders.readOnlyHttpHeaders(authHeaders(acc)));
+            authCache.put(acc.getId(), c);
+        }
+        return c.headers;
+    }
+
+    private HttpHeaders authHeaders(CfAccount acc) {
         HttpHeaders h = new HttpHeaders();
         String key = crypto.decryptIfEncrypted(acc.getApiKey());
         if ("API_TOKEN".equalsIgnoreCase(acc.getApiType())) {
@@ -32,39 +97,147 @@ public class CfClient {
         return h;
     }
 
-    public Mono<String> listZones(CfAccount acc, int page, int perPage) {
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder.path("/zones").queryParam("page", page).queryParam("per_page", perPage)
-                        .build())
+    // 账户修改、启停或删除后调用
+    public void invalidateCredentials(Long accountId) {
+        if (accountId != null)
+            authCache.remove(accountId);
+    }
+
+    private static final class CachedAuth {
+        final String apiType;
+        final String email;
+        final String apiKey;
+        final HttpHeaders headers;
+
+        CachedAuth(CfAccount acc, HttpHeaders headers) {
+            this.apiType = acc.getApiType();
+            this.email = acc.getEmail();
+            this.apiKey = acc.getApiKey();
+            this.headers = headers;
+        }
+
+        boolean matches(CfAccount acc) {
+            return Objects.equals(apiKey, acc.getApiKey()) && Objects.equals(apiType, acc.getApiType())
+                    && Objects.equals(email, acc.getEmail());
+        }
+    }
+
+    // 列表读取走后台通道，增删改走用户通道，见 CfRequestThrottle；分页拉取 zone 列表见 pages()
+    public Flux<CfPage<Zone>> listZonePages(CfAccount acc, int perPage, int window) {
+        return pages(page -> listPage(acc, "list_zones", "/zones", page, perPage, CfListDecoder::readZone), perPage,
+                window);
+    }
+
+    // 分页拉取某 zone 的 DNS 记录，见 pages()
+    public Flux<CfPage<DnsRecord>> listDnsRecordPages(CfAccount acc, String zoneId, int perPage, int window) {
+        return pages(page -> listPage(acc, "list_dns_records", "/zones/" + zoneId + "/dns_records", page, perPage,
+                CfListDecoder::readDnsRecord), perPage, window);
+    }
+
+    // 按完整域名查询某 zone 下的记录（单条对账用），走用户通道
+    public Mono<CfPage<DnsRecord>> listDnsRecordsByName(CfAccount acc, String zoneId, String name) {
+        return call(acc, "list_dns_records_by_name", Lane.USER, true, CfListDecoder.decode(webClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/zones/" + zoneId + "/dns_records").queryParam("name", name)
+                        .queryParam("per_page", 100).build())
                 .headers(h -> h.addAll(buildHeaders(acc)))
-                .retrieve().bodyToMono(String.class);
+                .retrieve().bodyToFlux(DataBuffer.class), CfListDecoder::readDnsRecord));
     }
 
-    public Mono<String> listDnsRecords(CfAccount acc, String zoneId, int page, int perPage) {
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder.path("/zones/" + zoneId + "/dns_records").queryParam("page", page)
-                        .queryParam("per_page", perPage).build())
+    // 响应体按 DataBuffer 流式解码为实体，见 CfListDecoder
+    private <T> Mono<CfPage<T>> listPage(CfAccount acc, String operation, String path, int page, int perPage,
+            CfListDecoder.ItemReader<T> reader) {
+        return call(acc, operation, Lane.BACKGROUND, true, CfListDecoder.decode(webClient.get()
+                .uri(uriBuilder -> uriBuilder.path(path).queryParam("page", page).queryParam("per_page", perPage)
+                        .build())
                 .headers(h -> h.addAll(buildHeaders(acc)))
-                .retrieve().bodyToMono(String.class);
+                .retrieve().bodyToFlux(DataBuffer.class), reader));
+    }
+
+    /**
+     * 先拉第一页，根据 result_info.total_pages 并发拉取剩余页，最多 window 个请求同时在途，
+     * 结果按页码顺序发出。没有 total_pages 时退化为逐页拉取，直到出现不满一页。
+     * 调用方自行检查每页的 success。
+     */
+    private <T> Flux<CfPage<T>> pages(IntFunction<Mono<CfPage<T>>> fetch, int perPage, int window) {
+        return fetch.apply(1).flatMapMany(first -> {
+            int totalPages = first.totalPages;
+            if (totalPages >= 1) {
+                if (totalPages == 1)
+                    return Flux.just(first);
+                return Flux.concat(Mono.just(first), Flux.range(2, totalPages - 1)
+                        .flatMapSequential(fetch::apply, Math.max(1, window)));
+            }
+            if (first.result.size() < perPage)
+                return Flux.just(first);
+            return Flux.concat(Mono.just(first), Flux.range(2, Integer.MAX_VALUE)
+                    .concatMap(fetch::apply)
+                    .takeUntil(p -> p.result.size() < perPage));
+        });
     }
 
     public Mono<String> createDnsRecord(CfAccount acc, String zoneId, String bodyJson) {
-        return webClient.post().uri("/zones/" + zoneId + "/dns_records")
+        return call(acc, "create_dns_record", Lane.USER, false, webClient.post()
+                .uri("/zones/" + zoneId + "/dns_records")
                 .headers(h -> h.addAll(buildHeaders(acc)))
                 .bodyValue(bodyJson)
-                .retrieve().bodyToMono(String.class);
+                .retrieve().bodyToMono(String.class));
     }
 
+    // PUT 为整条覆盖，重复提交结果一致，可以重试
     public Mono<String> updateDnsRecord(CfAccount acc, String zoneId, String recordId, String bodyJson) {
-        return webClient.put().uri("/zones/" + zoneId + "/dns_records/" + recordId)
+        return call(acc, "update_dns_record", Lane.USER, true, webClient.put()
+                .uri("/zones/" + zoneId + "/dns_records/" + recordId)
                 .headers(h -> h.addAll(buildHeaders(acc)))
                 .bodyValue(bodyJson)
-                .retrieve().bodyToMono(String.class);
+                .retrieve().bodyToMono(String.class));
     }
 
+    // 删除不重试：前一次实际已成功但响应丢失时，重试会得到“记录不存在”
     public Mono<String> deleteDnsRecord(CfAccount acc, String zoneId, String recordId) {
-        return webClient.delete().uri("/zones/" + zoneId + "/dns_records/" + recordId)
+        return call(acc, "delete_dns_record", Lane.USER, false, webClient.delete()
+                .uri("/zones/" + zoneId + "/dns_records/" + recordId)
+                .headers(h -> h.addAll(buildHeaders(acc)))
+                .retrieve().bodyToMono(String.class));
+    }
+
+    // 批量接口：一次请求提交 deletes/patches/puts/posts，Cloudflare 按此顺序在同一事务内执行
+    public Mono<String> batchDnsRecords(CfAccount acc, String zoneId, String bodyJson) {
+        return call(acc, "batch_dns_records", Lane.USER, false, webClient.post()
+                .uri("/zones/" + zoneId + "/dns_records/batch")
                 .headers(h -> h.addAll(buildHeaders(acc)))
-                .retrieve().bodyToMono(String.class);
+                .bodyValue(bodyJson)
+                .retrieve().bodyToMono(String.class));
+    }
+
+    /**
+     * 熔断检查在最外层，熔断中直接失败且不计入故障；每次尝试（含重试）都重新取限流令牌并单独计时、计量。
+     * 最终结果计入熔断器：成功或 4xx 业务错误视为可用，超时、连接失败、5xx、429 计为一次故障。
+     */
+    private <T> Mono<T> call(CfAccount acc, String operation, Lane lane, boolean idempotent, Mono<T> request) {
+        Long accountId = acc.getId();
+        return Mono.defer(() -> {
+            breaker.check(accountId);
+            Mono<T> attempt = throttle.acquire(acc, lane)
+                    .then(usage.meter(acc, operation, request.timeout(requestTimeout)));
+            if (idempotent && maxRetries > 0)
+                attempt = attempt.retryWhen(Retry.backoff(maxRetries, retryBackoff).jitter(0.5)
+                        .filter(CfCircuitBreaker::isOutage)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+            return attempt
+                    .doOnSuccess(v -> breaker.onSuccess(accountId))
+                    .doOnError(e -> breaker.onError(accountId, e));
+        }).onErrorMap(CfClient::unavailable);
+    }
+
+    // 超时、连接失败、5xx、429 转为 CfUnavailableException，其余错误（含 4xx）原样返回
+    private static Throwable unavailable(Throwable e) {
+        if (e instanceof TimeoutException)
+            return new CfUnavailableException("Cloudflare 请求超时，请稍后重试", e);
+        if (e instanceof WebClientRequestException)
+            return new CfUnavailableException("无法连接 Cloudflare，请稍后重试", e);
+        if (e instanceof WebClientResponseException wex && CfCircuitBreaker.isOutage(wex))
+            return new CfUnavailableException("Cloudflare 服务暂时不可用 (" + wex.getStatusCode().value() + ")，请稍后重试",
+                    e);
+        return e;
     }
 }
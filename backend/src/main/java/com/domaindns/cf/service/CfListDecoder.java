@@ -0,0 +1,298 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.dto.SyncDtos.CfPage;
+import com.domaindns.cf.model.DnsRecord;
+import com.domaindns.cf.model.Zone;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Cloudflare 列表响应的流式解码：把响应体的 DataBuffer 逐块喂给 Jackson 非阻塞解析器，
+ * result 数组中每个元素的 token 读完后立即转换为实体，不再先拼成整页 String、再建整棵 JsonNode 树。
+ * 只有 errors 与 result_info 这类很小的字段会建树。
+ */
+final class CfListDecoder {
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @FunctionalInterface
+    interface ItemReader<T> {
+        // 调用时解析器停在元素的 START_OBJECT 上
+        T read(JsonParser p) throws IOException;
+    }
+
+    private CfListDecoder() {
+    }
+
+    static <T> Mono<CfPage<T>> decode(Flux<DataBuffer> body, ItemReader<T> reader) {
+        return Mono.defer(() -> {
+            State<T> st;
+            try {
+                st = new State<>(reader);
+            } catch (IOException e) {
+                return Mono.error(new IllegalStateException("解析 Cloudflare 响应失败"));
+            }
+            return body.reduce(st, (s, buf) -> {
+                try {
+                    s.feed(buf);
+                } finally {
+                    DataBufferUtils.release(buf);
+                }
+                return s;
+            }).map(State::finish);
+        });
+    }
+
+    static DnsRecord readDnsRecord(JsonParser p) throws IOException {
+        DnsRecord r = new DnsRecord();
+        r.setContent("");
+        r.setTtl(120);
+        r.setProxied(0);
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            switch (f) {
+                case "id" -> r.setCfRecordId(p.getValueAsString());
+                case "name" -> r.setName(p.getValueAsString());
+                case "type" -> r.setType(p.getValueAsString());
+                case "content" -> r.setContent(p.getValueAsString(""));
+                case "ttl" -> r.setTtl(p.getValueAsInt(120));
+                case "proxied" -> r.setProxied(p.getValueAsBoolean(false) ? 1 : 0);
+                case "modified_on" -> {
+                    r.setModifiedOn(parseTime(p.getValueAsString()));
+                    r.setVersion(versionOf(r.getModifiedOn()));
+                }
+                default -> {
+                }
+            }
+            p.skipChildren();
+        }
+        return r;
+    }
+
+    static Zone readZone(JsonParser p) throws IOException {
+        Zone z = new Zone();
+        z.setStatus("unknown");
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            p.nextToken();
+            switch (f) {
+                case "id" -> z.setZoneId(p.getValueAsString(""));
+                case "name" -> z.setName(p.getValueAsString(""));
+                case "status" -> z.setStatus(p.getValueAsString("unknown"));
+                default -> {
+                }
+            }
+            p.skipChildren();
+        }
+        return z;
+    }
+
+    // 记录版本号：modified_on 的毫秒时间戳，Cloudflare 每次修改记录都会更新
+    static Long versionOf(LocalDateTime modifiedOn) {
+        return modifiedOn == null ? null : modifiedOn.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // Cloudflare 的时间为 ISO-8601 UTC，统一转为 UTC 的 LocalDateTime。
+    // 常见的 yyyy-MM-ddTHH:mm:ss[.f...]Z 格式按位解析，避免每条记录都走一遍 DateTimeFormatter；其他格式退回 Instant.parse
+    static LocalDateTime parseTime(String v) {
+        if (v == null || v.isEmpty())
+            return null;
+        LocalDateTime fast = parseUtcFast(v);
+        if (fast != null)
+            return fast;
+        try {
+            return LocalDateTime.ofInstant(Instant.parse(v), ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime parseUtcFast(String v) {
+        int len = v.length();
+        if (len < 20 || len > 30 || v.charAt(len - 1) != 'Z' || v.charAt(4) != '-' || v.charAt(7) != '-'
+                || v.charAt(10) != 'T' || v.charAt(13) != ':' || v.charAt(16) != ':')
+            return null;
+        int nanos = 0;
+        if (len > 20) {
+            if (v.charAt(19) != '.' || len == 21)
+                return null;
+            nanos = digits(v, 20, len - 1);
+            if (nanos < 0)
+                return null;
+            // 小数位不足 9 位时补齐到纳秒
+            for (int i = len - 21; i < 9; i++)
+                nanos *= 10;
+        }
+        int year = digits(v, 0, 4), month = digits(v, 5, 7), day = digits(v, 8, 10);
+        int hour = digits(v, 11, 13), minute = digits(v, 14, 16), second = digits(v, 17, 19);
+        if ((year | month | day | hour | minute | second) < 0)
+            return null;
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second, nanos);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    // 解析 [from, to) 范围内的十进制数字，含非数字时返回 -1
+    private static int digits(String s, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    private static final class State<T> {
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final ItemReader<T> reader;
+        private final CfPage<T> page = new CfPage<>();
+        private int depth; // 根对象内为 1
+        private String field; // 根对象上等待取值的字段名
+        private boolean inResult; // 位于 result 数组的元素之间
+        private int skipDepth;
+        private TokenBuffer capture; // 正在收集的子树（result 元素、errors、result_info）
+        private String captureFor;
+        private int captureDepth;
+        private boolean done;
+
+        State(ItemReader<T> reader) throws IOException {
+            this.parser = FACTORY.createNonBlockingByteBufferParser();
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.reader = reader;
+        }
+
+        void feed(DataBuffer buf) {
+            try (DataBuffer.ByteBufferIterator it = buf.readableByteBuffers()) {
+                while (it.hasNext()) {
+                    feeder.feedInput(it.next());
+                    drain();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("解析 Cloudflare 响应失败");
+            }
+        }
+
+        CfPage<T> finish() {
+            try {
+                feeder.endOfInput();
+                drain();
+                parser.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("解析 Cloudflare 响应失败");
+            }
+            if (!done)
+                throw new IllegalStateException("解析 Cloudflare 响应失败");
+            return page;
+        }
+
+        private void drain() throws IOException {
+            JsonToken t;
+            while ((t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE)
+                onToken(t);
+        }
+
+        private void onToken(JsonToken t) throws IOException {
+            if (capture != null) {
+                capture.copyCurrentEvent(parser);
+                if (t.isStructStart())
+                    captureDepth++;
+                else if (t.isStructEnd())
+                    captureDepth--;
+                if (captureDepth == 0)
+                    completeCapture();
+                return;
+            }
+            if (skipDepth > 0) {
+                if (t.isStructStart())
+                    skipDepth++;
+                else if (t.isStructEnd())
+                    skipDepth--;
+                return;
+            }
+            if (inResult) {
+                if (t == JsonToken.END_ARRAY)
+                    inResult = false;
+                else
+                    startCapture("item", t);
+                return;
+            }
+            if (depth == 0) {
+                if (t == JsonToken.START_OBJECT)
+                    depth = 1;
+                return;
+            }
+            if (field == null) {
+                if (t == JsonToken.FIELD_NAME) {
+                    field = parser.currentName();
+                } else if (t == JsonToken.END_OBJECT) {
+                    depth = 0;
+                    done = true;
+                }
+                return;
+            }
+            String f = field;
+            field = null;
+            switch (f) {
+                case "result" -> {
+                    if (t == JsonToken.START_ARRAY)
+                        inResult = true;
+                    else if (t.isStructStart())
+                        skipDepth = 1;
+                }
+                case "success" -> page.success = t != JsonToken.VALUE_FALSE;
+                case "errors", "result_info" -> startCapture(f, t);
+                default -> {
+                    if (t.isStructStart())
+                        skipDepth = 1;
+                }
+            }
+        }
+
+        private void startCapture(String target, JsonToken t) throws IOException {
+            capture = new TokenBuffer(parser);
+            captureFor = target;
+            captureDepth = 0;
+            onToken(t);
+        }
+
+        private void completeCapture() throws IOException {
+            TokenBuffer tb = capture;
+            capture = null;
+            try (JsonParser p = tb.asParser()) {
+                p.nextToken();
+                if ("item".equals(captureFor)) {
+                    if (p.currentToken() == JsonToken.START_OBJECT)
+                        page.result.add(reader.read(p));
+                } else {
+                    JsonNode n = MAPPER.readTree(p);
+                    if ("errors".equals(captureFor))
+                        page.errors = n.toString();
+                    else
+                        page.totalPages = n.path("total_pages").asInt(-1);
+                }
+            }
+        }
+    }
+}
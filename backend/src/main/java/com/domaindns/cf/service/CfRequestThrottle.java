@@ -0,0 +1,109 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.model.CfAccount;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按 Cloudflare 账户限流的令牌桶，状态放在 Redis 中，所有节点共享同一份额度。
+ * 桶中保留 reserve 个令牌只给 USER 通道（用户触发的增删改）使用；
+ * BACKGROUND 通道（同步等列表读取）在令牌不足时排队等待，而不是直接失败。
+ * Redis 不可用时放行，不影响业务。
+ */
+@Component
+public class CfRequestThrottle {
+    private static final Logger log = LoggerFactory.getLogger(CfRequestThrottle.class);
+    private static final String KEY_PREFIX = "cf:throttle:";
+
+    public enum Lane {
+        USER, BACKGROUND
+    }
+
+    // 返回 0 表示已拿到令牌，否则返回建议等待的毫秒数；时间取 Redis 服务器时间，避免各节点时钟不一致
+    private static final DefaultRedisScript<Long> SCRIPT = new DefaultRedisScript<>(
+            "local cap = tonumber(ARGV[1]) "
+                    + "local rate = tonumber(ARGV[2]) "
+                    + "local need = 1 + tonumber(ARGV[3]) "
+                    + "local t = redis.call('TIME') "
+                    + "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) "
+                    + "local b = redis.call('HMGET', KEYS[1], 'tokens', 'ts') "
+                    + "local tokens = tonumber(b[1]) "
+                    + "local ts = tonumber(b[2]) "
+                    + "if tokens == nil then tokens = cap ts = now end "
+                    + "tokens = math.min(cap, tokens + math.max(0, now - ts) * rate / 1000) "
+                    + "local wait = 0 "
+                    + "if tokens >= need then tokens = tokens - 1 "
+                    + "else wait = math.ceil((need - tokens) * 1000 / rate) end "
+                    + "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(now)) "
+                    + "redis.call('PEXPIRE', KEYS[1], math.ceil(cap * 1000 / rate) + 1000) "
+                    + "return wait",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    private final int capacity;
+    private final double refillPerSecond;
+    private final int reserve;
+    private final long userMaxWaitMs;
+    private final long backgroundMaxWaitMs;
+
+    public CfRequestThrottle(StringRedisTemplate redis,
+            @Value("${cf.throttle.enabled:true}") boolean enabled,
+            @Value("${cf.throttle.capacity:200}") int capacity,
+            @Value("${cf.throttle.refill-per-second:4}") double refillPerSecond,
+            @Value("${cf.throttle.reserve:40}") int reserve,
+            @Value("${cf.throttle.user-max-wait-ms:5000}") long userMaxWaitMs,
+            @Value("${cf.throttle.background-max-wait-ms:600000}") long backgroundMaxWaitMs) {
+        this.redis = redis;
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.refillPerSecond = refillPerSecond > 0 ? refillPerSecond : 4;
+        this.reserve = Math.max(0, Math.min(reserve, this.capacity - 1));
+        this.userMaxWaitMs = userMaxWaitMs;
+        this.backgroundMaxWaitMs = backgroundMaxWaitMs;
+    }
+
+    // 拿到令牌后完成；超过该通道的最长等待时间仍未拿到则报错
+    public Mono<Void> acquire(CfAccount acc, Lane lane) {
+        if (!enabled || acc == null || acc.getId() == null)
+            return Mono.empty();
+        long deadline = System.currentTimeMillis() + (lane == Lane.USER ? userMaxWaitMs : backgroundMaxWaitMs);
+        return attempt(acc.getId(), lane, deadline);
+    }
+
+    private Mono<Void> attempt(Long accountId, Lane lane, long deadline) {
+        return Mono.fromCallable(() -> tryAcquire(accountId, lane))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(wait -> {
+                    if (wait <= 0)
+                        return Mono.<Void>empty();
+                    // 加一点抖动，避免大量等待者同时醒来
+                    long sleep = wait + ThreadLocalRandom.current().nextLong(50);
+                    if (System.currentTimeMillis() + sleep > deadline)
+                        return Mono.error(new IllegalStateException("Cloudflare 请求繁忙，请稍后重试"));
+                    return Mono.delay(Duration.ofMillis(sleep)).then(attempt(accountId, lane, deadline));
+                });
+    }
+
+    private long tryAcquire(Long accountId, Lane lane) {
+        try {
+            Long wait = redis.execute(SCRIPT, Collections.singletonList(KEY_PREFIX + accountId),
+                    String.valueOf(capacity), String.valueOf(refillPerSecond),
+                    String.valueOf(lane == Lane.USER ? 0 : reserve));
+            return wait == null ? 0 : wait;
+        } catch (Exception e) {
+            log.warn("Cloudflare 限流令牌获取失败，直接放行: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.domaindns.cf.service;
+
+/**
+ * Cloudflare 暂时不可用（熔断中、超时或连接失败）。由 GlobalExceptionHandler 统一返回 50301，
+ * 前端据此提示“稍后重试”，本地镜像数据的查询不受影响。
+ */
+public class CfUnavailableException extends RuntimeException {
+    public CfUnavailableException(String message) {
+        super(message);
+    }
+
+    public CfUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
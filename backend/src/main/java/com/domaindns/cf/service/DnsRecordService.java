@@ -2,199 +2,760 @@ package com.domaindns.cf.service;
 
 import com.domaindns.cf.mapper.CfAccountMapper;
 import com.domaindns.cf.mapper.DnsRecordMapper;
+import com.domaindns.cf.mapper.SyncJobMapper;
 import com.domaindns.cf.mapper.ZoneMapper;
+import com.domaindns.cf.dto.SyncDtos.CfPage;
+import com.domaindns.cf.dto.SyncDtos.ZoneSyncResult;
 import com.domaindns.cf.model.CfAccount;
 import com.domaindns.cf.model.DnsRecord;
+import com.domaindns.cf.model.SyncJob;
 import com.domaindns.cf.model.Zone;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
 
 @Service
 public class DnsRecordService {
+    private static final Logger log = LoggerFactory.getLogger(DnsRecordService.class);
     private final DnsRecordMapper recordMapper;
     private final ZoneMapper zoneMapper;
     private final CfAccountMapper accMapper;
     private final CfClient client;
+    private final ZoneRegistry zoneRegistry;
+    private final SyncJobMapper jobMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final SyncLease syncLease;
+    private final ZoneSyncPolicy syncPolicy;
+    private final ZoneSyncFlight syncFlight;
+    private final OccupiedNameIndex nameIndex;
+    private final int upsertBatchSize;
+    private final long fullSweepIntervalMinutes;
+    private final int pagePrefetch;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    private static final int RECORDS_PER_PAGE = 100;
+    private static final long TOMBSTONE_CLOCK_SKEW_MS = 60_000;
+    static final String JOB_DNS_RECORDS = "DNS_RECORDS";
+    static final String MODE_FULL = "FULL";
+    static final String MODE_INCREMENTAL = "INCREMENTAL";
+
     public DnsRecordService(DnsRecordMapper recordMapper, ZoneMapper zoneMapper, CfAccountMapper accMapper,
-            CfClient client) {
+            CfClient client, ZoneRegistry zoneRegistry, SyncJobMapper jobMapper,
+            TransactionTemplate transactionTemplate, SyncLease syncLease, ZoneSyncPolicy syncPolicy,
+            ZoneSyncFlight syncFlight, OccupiedNameIndex nameIndex,
+            @Value("${sync.upsert-batch-size:500}") int upsertBatchSize,
+            @Value("${sync.full-sweep-interval-minutes:60}") long fullSweepIntervalMinutes,
+            @Value("${sync.page-prefetch:4}") int pagePrefetch) {
         this.recordMapper = recordMapper;
         this.zoneMapper = zoneMapper;
         this.accMapper = accMapper;
         this.client = client;
+        this.zoneRegistry = zoneRegistry;
+        this.jobMapper = jobMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.syncLease = syncLease;
+        this.syncPolicy = syncPolicy;
+        this.syncFlight = syncFlight;
+        this.nameIndex = nameIndex;
+        this.upsertBatchSize = Math.max(1, upsertBatchSize);
+        this.fullSweepIntervalMinutes = fullSweepIntervalMinutes;
+        this.pagePrefetch = Math.max(1, pagePrefetch);
     }
 
-    public void syncZoneRecords(Long zoneDbId) {
-        Zone z = zoneMapper.list(null, null, null).stream().filter(x -> x.getId().equals(zoneDbId)).findFirst()
-                .orElse(null);
-        if (z == null)
-            throw new IllegalArgumentException("zone 不存在");
+    // 全量同步：拉取全部记录并清理 Cloudflare 已删除的记录
+    public ZoneSyncResult syncZoneRecords(Long zoneDbId) {
+        return doSync(zoneDbId, true, null);
+    }
+
+    // 增量同步：只写入 modified_on 晚于上次水位线的记录；
+    // 距上次全量超过 sync.full-sweep-interval-minutes（或无水位线）时自动转为全量，以清理已删除记录
+    public ZoneSyncResult syncZoneRecordsIncremental(Long zoneDbId) {
+        // 最近一次成功（取水位线）与最近一次成功的全量（判断是否到期）一次查出，按 id 倒序
+        List<SyncJob> recent = jobMapper.findLastSuccesses(zoneDbId, JOB_DNS_RECORDS, MODE_FULL);
+        SyncJob last = recent.isEmpty() ? null : recent.get(0);
+        SyncJob lastFull = null;
+        for (SyncJob j : recent) {
+            if (MODE_FULL.equals(j.getSyncMode()))
+                lastFull = j;
+        }
+        if (lastFull == null || lastFull.getFinishedAt() == null
+                || lastFull.getFinishedAt().isBefore(LocalDateTime.now().minusMinutes(fullSweepIntervalMinutes)))
+            return doSync(zoneDbId, true, null);
+        if (last == null || last.getModifiedWatermark() == null)
+            return doSync(zoneDbId, true, null);
+        return doSync(zoneDbId, false, last.getModifiedWatermark());
+    }
+
+    // 先取同步租约，再在本节点内把同一 zone 的并发同步合并为一次（见 ZoneSyncFlight）；
+    // 租约保证同一时刻只有一个节点在同步，跨节点无需再合并
+    private ZoneSyncResult doSync(Long zoneDbId, boolean full, LocalDateTime watermark) {
+        try (SyncLease.Lease lease = syncLease.acquire()) {
+            return syncFlight.run(zoneDbId, full, () -> doSync(lease, zoneDbId, full, watermark));
+        }
+    }
+
+    private ZoneSyncResult doSync(SyncLease.Lease lease, Long zoneDbId, boolean full, LocalDateTime watermark) {
+        long start = System.currentTimeMillis();
+        Zone z = zoneById(zoneDbId);
         CfAccount acc = accMapper.findById(z.getCfAccountId());
         if (acc == null || acc.getEnabled() == null || acc.getEnabled() == 0)
             throw new IllegalArgumentException("对应账户不可用");
 
-        // 收集Cloudflare中的所有记录ID
-        Set<String> cfRecordIds = new HashSet<>();
-        int page = 1, per = 100;
-        boolean hasMore = true;
-
-        while (hasMore) {
-            String json = client.listDnsRecords(acc, z.getZoneId(), page, per).block();
-            try {
-                JsonNode root = objectMapper.readTree(json);
-                JsonNode result = root.get("result");
-                int pageSaved = 0;
-                if (result != null && result.isArray()) {
-                    for (JsonNode n : result) {
-                        String cfRecordId = n.get("id").asText();
-                        cfRecordIds.add(cfRecordId);
-
-                        DnsRecord r = new DnsRecord();
+        ZoneSyncResult res = new ZoneSyncResult();
+        res.zoneId = z.getId();
+        res.zoneName = z.getName();
+        res.cfAccountId = z.getCfAccountId();
+        res.mode = full ? MODE_FULL : MODE_INCREMENTAL;
+
+        SyncJob job = new SyncJob();
+        job.setZoneId(z.getId());
+        job.setJobType(JOB_DNS_RECORDS);
+        job.setStatus("RUNNING");
+        job.setSyncMode(res.mode);
+        job.setStartedAt(LocalDateTime.now());
+        jobMapper.insert(job);
+        res.jobId = job.getId();
+
+        // 本轮见到的 modified_on 最大值，作为下次增量同步的水位线
+        LocalDateTime maxModified = watermark;
+        try {
+            // 本轮同步代次：本轮写入的记录都打上该代次
+            long syncGen = System.currentTimeMillis();
+            // zone 指纹：所有记录哈希之和 + 记录数，与顺序无关，可边分页边累加
+            long fpSum = 0;
+            int seen = 0;
+            // 全量同步时记下 Cloudflare 上现有（未删除）的记录 ID，清理过期行时只需按 ID 刷新代次，不必再下载一遍
+            List<String> liveIds = full ? new ArrayList<>() : null;
+            try (Stream<CfPage<DnsRecord>> pages = recordPages(acc, z.getZoneId())) {
+                Iterator<CfPage<DnsRecord>> it = pages.iterator();
+                while (it.hasNext()) {
+                    CfPage<DnsRecord> page = checkPage(it.next());
+                    List<DnsRecord> candidates = new ArrayList<>(page.result.size());
+                    for (DnsRecord r : page.result) {
+                        seen++;
                         r.setZoneId(z.getId());
-                        r.setCfRecordId(cfRecordId);
-                        r.setName(n.get("name").asText());
-                        r.setType(n.get("type").asText());
-                        r.setContent(n.path("content").asText(""));
-                        r.setTtl(n.path("ttl").asInt(120));
-                        r.setProxied(n.path("proxied").asBoolean(false) ? 1 : 0);
-                        recordMapper.upsert(r);
-                        pageSaved++;
+                        r.setContentHash(contentHash(r));
+                        fpSum += r.getContentHash();
+                        LocalDateTime modified = r.getModifiedOn();
+                        if (modified != null && (maxModified == null || modified.isAfter(maxModified)))
+                            maxModified = modified;
+                        if (!full && modified != null && !modified.isAfter(watermark)) {
+                            res.skipped++;
+                            continue;
+                        }
+                        r.setSyncGen(syncGen);
+                        candidates.add(r);
+                    }
+                    // 按记录哈希比对本地镜像，只写入新增或内容变化的记录
+                    Set<String> tombstoned = tombstonedIds(z.getId(), candidates);
+                    List<DnsRecord> changed = filterChanged(z.getId(), candidates, tombstoned);
+                    if (full) {
+                        for (DnsRecord r : candidates) {
+                            if (!tombstoned.contains(r.getCfRecordId()))
+                                liveIds.add(r.getCfRecordId());
+                        }
+                    }
+                    res.skipped += candidates.size() - changed.size();
+                    // 每页写库前确认租约仍有效，租约已被其他节点接手时中止
+                    lease.check();
+                    if (!changed.isEmpty()) {
+                        upsertInChunks(changed);
+                        nameIndex.addAll(z.getId(), names(changed));
                     }
+                    res.upserted += changed.size();
                 }
-                int totalPages = root.path("result_info").path("total_pages").asInt(1);
-                hasMore = page < totalPages && pageSaved > 0;
-                page++;
-            } catch (Exception e) {
-                throw new IllegalStateException("解析 Cloudflare 记录响应失败");
             }
-        }
 
-        // 删除数据库中不在Cloudflare中的记录
-        List<DnsRecord> dbRecords = recordMapper.listByZone(zoneDbId, null, null);
-        for (DnsRecord dbRecord : dbRecords) {
-            if (!cfRecordIds.contains(dbRecord.getCfRecordId())) {
-                System.out.println("删除不存在的记录: " + dbRecord.getCfRecordId() + " (" + dbRecord.getName() + ")");
-                recordMapper.deleteByZoneAndCfRecordId(zoneDbId, dbRecord.getCfRecordId());
+            if (full) {
+                // 写入新增/变化记录后，本地多出来的行数即为 Cloudflare 已删除的记录数。
+                // 每次都与镜像比对，不能只看 Cloudflare 指纹：本地写入后又在 Cloudflare 上直接删除时指纹会回到原值
+                int stale = recordMapper.countByZone(zoneDbId) - liveIds.size();
+                if (stale > 0) {
+                    res.deleted = sweepStale(lease, z, liveIds, syncGen);
+                    if (res.deleted > 0) {
+                        log.info("zone {} 删除不存在的记录 {} 条", z.getName(), res.deleted);
+                        nameIndex.reloadZone(zoneDbId);
+                    }
+                }
+                String fingerprint = seen + ":" + Long.toHexString(fpSum);
+                if (!fingerprint.equals(z.getRecordsFingerprint())) {
+                    zoneMapper.updateRecordsFingerprint(zoneDbId, fingerprint);
+                    zoneRegistry.updateFingerprint(zoneDbId, fingerprint);
+                }
+                // 本轮开始前删除的记录不会再出现在之后拉取的分页中，墓碑可以清理（留出节点间时钟偏差）
+                recordMapper.purgeTombstones(zoneDbId, syncGen - TOMBSTONE_CLOCK_SKEW_MS);
             }
+            res.success = true;
+            syncPolicy.afterSync(zoneDbId, res.upserted + res.deleted);
+        } catch (RuntimeException e) {
+            res.error = e.getMessage();
+            throw e;
+        } finally {
+            res.durationMs = System.currentTimeMillis() - start;
+            job.setStatus(res.success ? "SUCCESS" : "FAILED");
+            job.setMessage(res.error == null ? null : truncate(res.error, 500));
+            job.setUpserted(res.upserted);
+            job.setDeleted(res.deleted);
+            job.setModifiedWatermark(maxModified);
+            job.setFinishedAt(LocalDateTime.now());
+            job.setDurationMs(res.durationMs);
+            jobMapper.finish(job);
         }
+        return res;
     }
 
-    public List<DnsRecord> list(Long zoneDbId, String type, String name) {
-        return recordMapper.listByZone(zoneDbId, type, name);
+    // 后续页由 CfClient 在后台并发拉取并流式解码（在途请求数受 sync.page-prefetch 限制），当前线程按页码顺序写库
+    private Stream<CfPage<DnsRecord>> recordPages(CfAccount acc, String cfZoneId) {
+        return CfApiUsage.withFeature(client.listDnsRecordPages(acc, cfZoneId, RECORDS_PER_PAGE, pagePrefetch),
+                CfApiUsage.FEATURE_SYNC).toStream(pagePrefetch);
     }
 
-    public List<com.domaindns.cf.dto.DnsRecordDtos.DnsRecordWithUser> listWithUser(Long zoneDbId, String type,
-            String name) {
-        return recordMapper.listByZoneWithUser(zoneDbId, type, name);
+    private CfPage<DnsRecord> checkPage(CfPage<DnsRecord> page) {
+        // 失败响应不能当作空列表处理，否则后续清理会删光本地记录
+        if (!page.success)
+            throw new IllegalStateException("Cloudflare API 错误: " + page.errors);
+        return page;
     }
 
-    public void create(Long zoneDbId, String bodyJson) throws Exception {
-        Zone z = zoneById(zoneDbId);
-        CfAccount acc = accById(z.getCfAccountId());
-        String resp;
-        try {
-            resp = client.createDnsRecord(acc, z.getZoneId(), bodyJson).block();
-        } catch (WebClientResponseException wex) {
-            String body = wex.getResponseBodyAsString();
-            throw new IllegalStateException(body != null && !body.isEmpty() ? body
-                    : (wex.getStatusCode() + " " + wex.getStatusText()));
+    // 已删除（有墓碑）的记录：本页可能是在删除之前拉取的
+    private Set<String> tombstonedIds(Long zoneDbId, List<DnsRecord> candidates) {
+        if (candidates.isEmpty())
+            return Set.of();
+        return new HashSet<>(recordMapper.findTombstonedIds(zoneDbId, cfIds(candidates)));
+    }
+
+    // 跳过已删除的记录、内容未变的记录，以及比镜像更旧的记录（按版本写入时不会生效，不能计为变更，
+    // 否则每轮都被重复统计，自适应间隔无法放宽）
+    private List<DnsRecord> filterChanged(Long zoneDbId, List<DnsRecord> candidates, Set<String> deleted) {
+        if (candidates.isEmpty())
+            return candidates;
+        Map<String, DnsRecord> existing = new HashMap<>();
+        for (DnsRecord e : recordMapper.findHashesByCfIds(zoneDbId, cfIds(candidates)))
+            existing.put(e.getCfRecordId(), e);
+        List<DnsRecord> changed = new ArrayList<>();
+        for (DnsRecord r : candidates) {
+            if (deleted.contains(r.getCfRecordId()))
+                continue;
+            DnsRecord e = existing.get(r.getCfRecordId());
+            if (e == null)
+                changed.add(r);
+            else if (!r.getContentHash().equals(e.getContentHash()) && !olderThan(r.getVersion(), e.getVersion()))
+                changed.add(r);
         }
-        JsonNode root = objectMapper.readTree(resp);
-        if (!root.path("success").asBoolean(false))
-            throw new IllegalStateException(root.path("errors").toString());
-        JsonNode n = root.path("result");
+        return changed;
+    }
+
+    // 与 upsert 的版本条件一致：任一方没有版本时都会写入
+    private static boolean olderThan(Long version, Long stored) {
+        return version != null && stored != null && version < stored;
+    }
+
+    // 存在过期记录时给本轮见到的其余（内容未变、未写入的）记录补上本轮代次，然后按 zone 一次性删除代次更早的记录。
+    // 本轮开始后通过 create/update 写入的记录代次为写入时刻，不会被误删。
+    private int sweepStale(SyncLease.Lease lease, Zone z, List<String> liveIds, long syncGen) {
+        for (int i = 0; i < liveIds.size(); i += upsertBatchSize) {
+            lease.check();
+            recordMapper.touchSyncGen(z.getId(), liveIds.subList(i, Math.min(i + upsertBatchSize, liveIds.size())),
+                    syncGen);
+        }
+        lease.check();
+        recordMapper.detachStaleUserDomains(z.getId(), syncGen);
+        return recordMapper.deleteStaleByZone(z.getId(), syncGen);
+    }
+
+    private static List<String> cfIds(List<DnsRecord> records) {
+        List<String> out = new ArrayList<>(records.size());
+        for (DnsRecord r : records)
+            out.add(r.getCfRecordId());
+        return out;
+    }
+
+    private DnsRecord toRecord(Long zoneDbId, JsonNode n) {
         DnsRecord r = new DnsRecord();
-        r.setZoneId(z.getId());
+        r.setZoneId(zoneDbId);
         r.setCfRecordId(n.get("id").asText());
         r.setName(n.get("name").asText());
         r.setType(n.get("type").asText());
         r.setContent(n.path("content").asText(""));
         r.setTtl(n.path("ttl").asInt(120));
         r.setProxied(n.path("proxied").asBoolean(false) ? 1 : 0);
-        recordMapper.upsert(r);
+        r.setModifiedOn(CfListDecoder.parseTime(n.path("modified_on").asText(null)));
+        r.setVersion(CfListDecoder.versionOf(r.getModifiedOn()));
+        r.setContentHash(contentHash(r));
+        return r;
     }
 
-    public void update(Long zoneDbId, String recordId, String bodyJson) throws Exception {
-        Zone z = zoneById(zoneDbId);
-        CfAccount acc = accById(z.getCfAccountId());
-        String resp;
+    // 记录内容哈希：SHA-256(id|name|type|content|ttl|proxied) 的前 8 字节
+    static long contentHash(DnsRecord r) {
+        String s = r.getCfRecordId() + "|" + r.getName() + "|" + r.getType() + "|" + r.getContent() + "|"
+                + r.getTtl() + "|" + r.getProxied();
         try {
-            resp = client.updateDnsRecord(acc, z.getZoneId(), recordId, bodyJson).block();
-        } catch (WebClientResponseException wex) {
-            String body = wex.getResponseBodyAsString();
-            // 如果记录不存在，尝试重新同步后再试一次
-            if (body != null && body.contains("Record does not exist")) {
-                System.out.println("记录不存在，尝试重新同步: " + recordId);
-                syncZoneRecords(zoneDbId);
-                // 重新尝试更新
-                try {
-                    resp = client.updateDnsRecord(acc, z.getZoneId(), recordId, bodyJson).block();
-                } catch (WebClientResponseException retryEx) {
-                    String retryBody = retryEx.getResponseBodyAsString();
-                    throw new IllegalStateException(retryBody != null && !retryBody.isEmpty() ? retryBody
-                            : (retryEx.getStatusCode() + " " + retryEx.getStatusText()));
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(d).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+
+    // 按 sync.upsert-batch-size 分块批量写入，避免单条 SQL 过大
+    private void upsertInChunks(List<DnsRecord> records) {
+        for (int i = 0; i < records.size(); i += upsertBatchSize) {
+            recordMapper.upsertBatch(records.subList(i, Math.min(i + upsertBatchSize, records.size())));
+        }
+    }
+
+    public List<DnsRecord> list(Long zoneDbId, String type, String name) {
+        return recordMapper.listByZone(zoneDbId, type, name);
+    }
+
+    public List<com.domaindns.cf.dto.DnsRecordDtos.DnsRecordWithUser> listWithUser(Long zoneDbId, String type,
+            String name) {
+        return recordMapper.listByZoneWithUser(zoneDbId, type, name);
+    }
+
+    // 以下同步方法供非 Web 请求线程（定时任务、管理批处理等）使用，内部等待对应的异步版本完成
+    public void create(Long zoneDbId, String bodyJson) throws Exception {
+        createAsync(zoneDbId, bodyJson).block();
+    }
+
+    public void update(Long zoneDbId, String recordId, String bodyJson) throws Exception {
+        updateAsync(zoneDbId, recordId, bodyJson).block();
+    }
+
+    public void delete(Long zoneDbId, String recordId) throws Exception {
+        deleteAsync(zoneDbId, recordId).block();
+    }
+
+    public List<DnsRecord> batch(Long zoneDbId, List<String> deleteIds, Map<String, String> puts, List<String> posts)
+            throws Exception {
+        return batchAsync(zoneDbId, deleteIds, puts, posts).block();
+    }
+
+    /*
+     * 非阻塞版本：Cloudflare 调用全程不占用调用线程，查库与写镜像切到 boundedElastic 执行，
+     * Controller 直接返回 Mono，等待 Cloudflare 响应期间不占用 Tomcat 请求线程。
+     */
+
+    // 创建记录，返回写入镜像的记录
+    public Mono<DnsRecord> createAsync(Long zoneDbId, String bodyJson) {
+        return target(zoneDbId).flatMap(t -> client.createDnsRecord(t.acc, t.zone.getZoneId(), bodyJson)
+                .onErrorMap(WebClientResponseException.class, DnsRecordService::cfError)
+                .flatMap(resp -> onBlocking(() -> saveResult(t.zone, resp))));
+    }
+
+    // 更新记录，返回写入镜像的记录。
+    // Cloudflare 上已不存在该记录时只对账同名记录并报错，不改写同名的其他记录（多值记录集中它们各自独立）
+    public Mono<DnsRecord> updateAsync(Long zoneDbId, String recordId, String bodyJson) {
+        return target(zoneDbId).flatMap(t -> client.updateDnsRecord(t.acc, t.zone.getZoneId(), recordId, bodyJson)
+                .onErrorResume(DnsRecordService::recordMissing, e -> reconcile(t, recordId)
+                        .then(Mono.error(new IllegalStateException("记录在 Cloudflare 上已不存在，本地数据已修复，请刷新后重新创建"))))
+                .onErrorMap(WebClientResponseException.class, DnsRecordService::cfError)
+                .flatMap(resp -> onBlocking(() -> saveResult(t.zone, resp))));
+    }
+
+    // 成功后立即删除镜像行；Cloudflare 上已不存在该记录时视为删除成功，只对账同名记录
+    public Mono<Void> deleteAsync(Long zoneDbId, String recordId) {
+        return target(zoneDbId).flatMap(t -> client.deleteDnsRecord(t.acc, t.zone.getZoneId(), recordId)
+                .flatMap(resp -> onBlocking(() -> {
+                    checkSuccess(resp);
+                    long gen = System.currentTimeMillis();
+                    String name = transactionTemplate.execute(st -> deleteMirrored(zoneDbId, recordId, gen));
+                    if (name != null)
+                        nameIndex.refresh(zoneDbId, List.of(name));
+                    return Boolean.TRUE;
+                }))
+                .onErrorResume(DnsRecordService::recordMissing, e -> reconcile(t, recordId).thenReturn(Boolean.TRUE))
+                .onErrorMap(WebClientResponseException.class, DnsRecordService::cfError)).then();
+    }
+
+    /**
+     * 通过 Cloudflare 批量接口一次提交某 zone 的删除、覆盖更新与新增（Cloudflare 原子执行），
+     * 成功后在同一个本地事务内同步到镜像。puts 的 key 为 Cloudflare 记录 ID。
+     * 返回新增的记录，顺序与 posts 一致。
+     */
+    public Mono<List<DnsRecord>> batchAsync(Long zoneDbId, List<String> deleteIds, Map<String, String> puts,
+            List<String> posts) {
+        return target(zoneDbId).flatMap(t -> onBlocking(() -> batchBody(deleteIds, puts, posts))
+                .flatMap(body -> client.batchDnsRecords(t.acc, t.zone.getZoneId(), body))
+                .onErrorMap(WebClientResponseException.class, DnsRecordService::cfError)
+                .flatMap(resp -> onBlocking(() -> saveBatchResult(t.zone, deleteIds, resp))));
+    }
+
+    /**
+     * 让某名称在 Cloudflare 上的记录与期望集合一致（desired 为 Cloudflare 记录 JSON）：按名称查询现有记录，
+     * 按 类型+内容 比对，TTL/代理不同的覆盖更新，缺少的新增；exclusive 时删除其余同名记录（修改、释放），
+     * 否则为申请：TXT/NS 允许与其余同名记录共存，其他类型在该名称已有其余记录时视为被占用，抛 IllegalArgumentException
+     * （申请前的查库校验与写入之间没有唯一约束，两个用户可能同时通过）。
+     * 差异通过批量接口一次提交，再按 Cloudflare 现状修复该名称的镜像。
+     * 重复执行结果相同，供 outbox 重试。返回与 desired 顺序一致的记录；Cloudflare 以 4xx 拒绝时抛 IllegalArgumentException。
+     */
+    public Mono<List<DnsRecord>> convergeAsync(Long zoneDbId, String name, List<String> desired, boolean exclusive) {
+        return target(zoneDbId).flatMap(t -> client.listDnsRecordsByName(t.acc, t.zone.getZoneId(), name)
+                .map(this::checkPage)
+                .flatMap(page -> onBlocking(() -> planConvergence(page.result, desired, exclusive)))
+                .flatMap(c -> {
+                    if (c.deletes.isEmpty() && c.puts.isEmpty() && c.posts.isEmpty())
+                        return onBlocking(() -> saveConvergence(t.zone, name, c, null));
+                    return onBlocking(() -> batchBody(c.deletes, c.puts, c.posts))
+                            .flatMap(body -> client.batchDnsRecords(t.acc, t.zone.getZoneId(), body))
+                            .flatMap(resp -> onBlocking(() -> saveConvergence(t.zone, name, c, resp)));
+                })
+                .onErrorMap(WebClientResponseException.class,
+                        wex -> new IllegalArgumentException("Cloudflare 拒绝了该变更: " + cfError(wex).getMessage())));
+    }
+
+    private Convergence planConvergence(List<DnsRecord> live, List<String> desired, boolean exclusive)
+            throws Exception {
+        Convergence c = new Convergence(desired.size());
+        List<DnsRecord> unmatched = new ArrayList<>(live);
+        for (int i = 0; i < desired.size(); i++) {
+            JsonNode d = objectMapper.readTree(desired.get(i));
+            String type = d.path("type").asText();
+            String content = d.path("content").asText("");
+            DnsRecord hit = null;
+            for (Iterator<DnsRecord> it = unmatched.iterator(); it.hasNext();) {
+                DnsRecord r = it.next();
+                if (type.equalsIgnoreCase(r.getType()) && sameContent(type, content, r.getContent())) {
+                    hit = r;
+                    it.remove();
+                    break;
                 }
+            }
+            if (hit == null) {
+                c.posts.add(desired.get(i));
+                c.postIndex.add(i);
+            } else if (hit.getTtl() == null || hit.getTtl() != d.path("ttl").asInt(1)
+                    || (hit.getProxied() != null && hit.getProxied() == 1) != d.path("proxied").asBoolean(false)) {
+                c.puts.put(hit.getCfRecordId(), desired.get(i));
+                c.putIndex.add(i);
             } else {
-                throw new IllegalStateException(body != null && !body.isEmpty() ? body
-                        : (wex.getStatusCode() + " " + wex.getStatusText()));
+                c.kept.add(hit);
+                c.result[i] = hit;
             }
         }
+        if (!exclusive && !unmatched.isEmpty() && !sharedTypes(desired))
+            throw new IllegalArgumentException("该子域名已被占用");
+        for (DnsRecord r : unmatched) {
+            if (exclusive)
+                c.deletes.add(r.getCfRecordId());
+            else
+                c.kept.add(r);
+        }
+        return c;
+    }
+
+    // 申请的记录是否都是允许与其他记录同名共存的类型（与 UserDomainService 申请前的校验一致）
+    private boolean sharedTypes(List<String> desired) throws Exception {
+        for (String d : desired) {
+            String type = objectMapper.readTree(d).path("type").asText().toUpperCase(Locale.ROOT);
+            if (!"TXT".equals(type) && !"NS".equals(type))
+                return false;
+        }
+        return true;
+    }
+
+    // Cloudflare 会规范化部分记录值：主机名不区分大小写、末尾的点可省略，TXT 可能带引号
+    private static boolean sameContent(String type, String want, String have) {
+        if (have == null)
+            return false;
+        String t = type.toUpperCase(Locale.ROOT);
+        if ("CNAME".equals(t) || "NS".equals(t) || "MX".equals(t))
+            return stripDot(want).equalsIgnoreCase(stripDot(have));
+        if ("TXT".equals(t))
+            return unquote(want).equals(unquote(have));
+        return want.trim().equals(have.trim());
+    }
+
+    private static String stripDot(String s) {
+        s = s.trim();
+        return s.endsWith(".") ? s.substring(0, s.length() - 1) : s;
+    }
+
+    private static String unquote(String s) {
+        s = s.trim();
+        return s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"") ? s.substring(1, s.length() - 1) : s;
+    }
+
+    // 用 Cloudflare 上该名称的最终记录修复镜像：写入现有记录，删除其余同名镜像行（先断开 user_domains 关联）
+    private List<DnsRecord> saveConvergence(Zone z, String name, Convergence c, String resp) throws Exception {
+        List<DnsRecord> finals = new ArrayList<>(c.kept);
+        if (resp != null) {
+            JsonNode result = checkSuccess(resp).path("result");
+            int i = 0;
+            for (JsonNode n : result.path("puts")) {
+                DnsRecord r = toRecord(z.getId(), n);
+                finals.add(r);
+                if (i < c.putIndex.size())
+                    c.result[c.putIndex.get(i++)] = r;
+            }
+            i = 0;
+            for (JsonNode n : result.path("posts")) {
+                DnsRecord r = toRecord(z.getId(), n);
+                finals.add(r);
+                if (i < c.postIndex.size())
+                    c.result[c.postIndex.get(i++)] = r;
+            }
+        }
+        long gen = System.currentTimeMillis();
+        Set<String> finalIds = new HashSet<>();
+        for (DnsRecord r : finals) {
+            r.setZoneId(z.getId());
+            r.setContentHash(contentHash(r));
+            r.setSyncGen(gen);
+            finalIds.add(r.getCfRecordId());
+        }
+        transactionTemplate.executeWithoutResult(st -> {
+            if (!finals.isEmpty())
+                upsertInChunks(finals);
+            for (DnsRecord local : recordMapper.findAllByZoneAndName(z.getId(), name)) {
+                if (!finalIds.contains(local.getCfRecordId()))
+                    deleteMirrored(local, gen);
+            }
+        });
+        nameIndex.refresh(z.getId(), List.of(name));
+        List<DnsRecord> out = new ArrayList<>();
+        for (DnsRecord r : c.result) {
+            if (r != null)
+                out.add(r);
+        }
+        return out;
+    }
+
+    // 手动同步同样放到 boundedElastic 上执行，释放请求线程
+    public Mono<ZoneSyncResult> syncZoneRecordsAsync(Long zoneDbId) {
+        return onBlocking(() -> syncZoneRecords(zoneDbId));
+    }
+
+    private static boolean recordMissing(Throwable e) {
+        if (!(e instanceof WebClientResponseException wex))
+            return false;
+        String body = wex.getResponseBodyAsString();
+        return body != null && body.contains("Record does not exist");
+    }
+
+    /**
+     * 单条对账：Cloudflare 报告 recordId 不存在时，按本地镜像中该记录的名称向 Cloudflare 查询同名记录，
+     * 只修复这些镜像行（写入 Cloudflare 上现有的、删除已不存在的并断开指向它们的 user_domains）。
+     * 同名的其他记录可能属于别的用户或多值记录集，不会把 user_domains 改指向它们。代替原先整 zone 重新同步。
+     */
+    private Mono<Void> reconcile(Target t, String recordId) {
+        Long zoneDbId = t.zone.getId();
+        return onBlocking(() -> Optional.ofNullable(recordMapper.findByZoneAndCfRecordId(zoneDbId, recordId)))
+                .flatMap(stale -> {
+                    if (stale.isEmpty())
+                        return Mono.<Void>empty();
+                    DnsRecord old = stale.get();
+                    log.info("记录 {} ({}) 在 Cloudflare 上已不存在，对账同名记录", old.getName(), recordId);
+                    return client.listDnsRecordsByName(t.acc, t.zone.getZoneId(), old.getName())
+                            .map(this::checkPage)
+                            .flatMap(page -> onBlocking(() -> {
+                                repairByName(zoneDbId, old.getName(), page.result);
+                                return Boolean.TRUE;
+                            }))
+                            .then();
+                });
+    }
+
+    private void repairByName(Long zoneDbId, String name, List<DnsRecord> live) {
+        long gen = System.currentTimeMillis();
+        Set<String> liveIds = new HashSet<>();
+        for (DnsRecord r : live) {
+            r.setZoneId(zoneDbId);
+            r.setContentHash(contentHash(r));
+            r.setSyncGen(gen);
+            liveIds.add(r.getCfRecordId());
+        }
+        transactionTemplate.executeWithoutResult(st -> {
+            if (!live.isEmpty())
+                upsertInChunks(live);
+            for (DnsRecord local : recordMapper.findAllByZoneAndName(zoneDbId, name)) {
+                if (!liveIds.contains(local.getCfRecordId()))
+                    deleteMirrored(local, gen);
+            }
+        });
+        nameIndex.refresh(zoneDbId, List.of(name));
+    }
+
+    private static IllegalStateException cfError(WebClientResponseException wex) {
+        String body = wex.getResponseBodyAsString();
+        return new IllegalStateException(body != null && !body.isEmpty() ? body
+                : (wex.getStatusCode() + " " + wex.getStatusText()));
+    }
+
+    private JsonNode checkSuccess(String resp) throws Exception {
         JsonNode root = objectMapper.readTree(resp);
         if (!root.path("success").asBoolean(false))
             throw new IllegalStateException(root.path("errors").toString());
-        JsonNode n = root.path("result");
-        DnsRecord r = new DnsRecord();
-        r.setZoneId(z.getId());
-        r.setCfRecordId(n.get("id").asText());
-        r.setName(n.get("name").asText());
-        r.setType(n.get("type").asText());
-        r.setContent(n.path("content").asText(""));
-        r.setTtl(n.path("ttl").asInt(120));
-        r.setProxied(n.path("proxied").asBoolean(false) ? 1 : 0);
+        return root;
+    }
+
+    private DnsRecord saveResult(Zone z, String resp) throws Exception {
+        DnsRecord r = toRecord(z.getId(), checkSuccess(resp).path("result"));
+        r.setSyncGen(System.currentTimeMillis());
+        DnsRecord before = recordMapper.findByZoneAndCfRecordId(z.getId(), r.getCfRecordId());
         recordMapper.upsert(r);
+        nameIndex.addAll(z.getId(), List.of(r.getName()));
+        // 改名后原名称可能已空闲
+        if (before != null && !before.getName().equalsIgnoreCase(r.getName()))
+            nameIndex.refresh(z.getId(), List.of(before.getName()));
+        return r;
     }
 
-    public void delete(Long zoneDbId, String recordId) throws Exception {
-        Zone z = zoneById(zoneDbId);
-        CfAccount acc = accById(z.getCfAccountId());
-        String resp;
-        try {
-            resp = client.deleteDnsRecord(acc, z.getZoneId(), recordId).block();
-        } catch (WebClientResponseException wex) {
-            String body = wex.getResponseBodyAsString();
-            // 如果记录不存在，尝试重新同步后再试一次
-            if (body != null && body.contains("Record does not exist")) {
-                System.out.println("记录不存在，尝试重新同步: " + recordId);
-                syncZoneRecords(zoneDbId);
-                // 重新尝试删除
-                try {
-                    resp = client.deleteDnsRecord(acc, z.getZoneId(), recordId).block();
-                } catch (WebClientResponseException retryEx) {
-                    String retryBody = retryEx.getResponseBodyAsString();
-                    throw new IllegalStateException(retryBody != null && !retryBody.isEmpty() ? retryBody
-                            : (retryEx.getStatusCode() + " " + retryEx.getStatusText()));
+    /**
+     * 删除镜像行：先断开指向它的 user_domains，再删除，并写入墓碑，
+     * 避免删除前已拉取、删除后才落库的同步分页把记录写回。须在事务内调用。
+     * 返回被删除行的名称（镜像中没有该行时为空），调用方在事务提交后据此刷新名称索引。
+     */
+    private String deleteMirrored(Long zoneDbId, String cfRecordId, long gen) {
+        DnsRecord local = recordMapper.findByZoneAndCfRecordId(zoneDbId, cfRecordId);
+        if (local != null)
+            return deleteMirrored(local, gen);
+        recordMapper.insertTombstone(zoneDbId, cfRecordId, gen);
+        return null;
+    }
+
+    private String deleteMirrored(DnsRecord local, long gen) {
+        recordMapper.detachUserDomains(local.getId());
+        recordMapper.deleteByZoneAndCfRecordId(local.getZoneId(), local.getCfRecordId());
+        recordMapper.insertTombstone(local.getZoneId(), local.getCfRecordId(), gen);
+        return local.getName();
+    }
+
+    private static List<String> names(List<DnsRecord> records) {
+        List<String> out = new ArrayList<>(records.size());
+        for (DnsRecord r : records)
+            out.add(r.getName());
+        return out;
+    }
+
+    private String batchBody(List<String> deleteIds, Map<String, String> puts, List<String> posts)
+            throws Exception {
+        ObjectNode body = objectMapper.createObjectNode();
+        if (deleteIds != null && !deleteIds.isEmpty()) {
+            ArrayNode arr = body.putArray("deletes");
+            for (String id : deleteIds)
+                arr.addObject().put("id", id);
+        }
+        if (puts != null && !puts.isEmpty()) {
+            ArrayNode arr = body.putArray("puts");
+            for (Map.Entry<String, String> e : puts.entrySet()) {
+                ObjectNode n = (ObjectNode) objectMapper.readTree(e.getValue());
+                n.put("id", e.getKey());
+                arr.add(n);
+            }
+        }
+        if (posts != null && !posts.isEmpty()) {
+            ArrayNode arr = body.putArray("posts");
+            for (String p : posts)
+                arr.add(objectMapper.readTree(p));
+        }
+        return body.toString();
+    }
+
+    private List<DnsRecord> saveBatchResult(Zone z, List<String> deleteIds, String resp) throws Exception {
+        JsonNode result = checkSuccess(resp).path("result");
+        long gen = System.currentTimeMillis();
+        List<DnsRecord> written = new ArrayList<>();
+        List<DnsRecord> created = new ArrayList<>();
+        for (JsonNode n : result.path("puts"))
+            written.add(toRecord(z.getId(), n));
+        for (JsonNode n : result.path("posts")) {
+            DnsRecord r = toRecord(z.getId(), n);
+            written.add(r);
+            created.add(r);
+        }
+        for (DnsRecord r : written)
+            r.setSyncGen(gen);
+        List<String> deletedNames = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(st -> {
+            if (deleteIds != null) {
+                for (String id : deleteIds) {
+                    String name = deleteMirrored(z.getId(), id, gen);
+                    if (name != null)
+                        deletedNames.add(name);
                 }
-            } else {
-                throw new IllegalStateException(body != null && !body.isEmpty() ? body
-                        : (wex.getStatusCode() + " " + wex.getStatusText()));
             }
+            if (!written.isEmpty())
+                upsertInChunks(written);
+        });
+        nameIndex.addAll(z.getId(), names(written));
+        nameIndex.refresh(z.getId(), deletedNames);
+        return created;
+    }
+
+    private Mono<Target> target(Long zoneDbId) {
+        return onBlocking(() -> {
+            Zone z = zoneById(zoneDbId);
+            return new Target(z, accById(z.getCfAccountId()));
+        });
+    }
+
+    // 阻塞的查库/写库操作放到 boundedElastic 线程池，不占用 Netty 事件循环
+    private static <T> Mono<T> onBlocking(Callable<T> task) {
+        return Mono.fromCallable(task).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // 某名称的收敛计划：要删除 / 覆盖 / 新增的记录，以及不需要改动的记录
+    private static final class Convergence {
+        final List<String> deletes = new ArrayList<>();
+        final Map<String, String> puts = new LinkedHashMap<>();
+        final List<Integer> putIndex = new ArrayList<>();
+        final List<String> posts = new ArrayList<>();
+        final List<Integer> postIndex = new ArrayList<>();
+        final List<DnsRecord> kept = new ArrayList<>();
+        final DnsRecord[] result;
+
+        Convergence(int size) {
+            this.result = new DnsRecord[size];
+        }
+    }
+
+    private static final class Target {
+        final Zone zone;
+        final CfAccount acc;
+
+        Target(Zone zone, CfAccount acc) {
+            this.zone = zone;
+            this.acc = acc;
         }
-        JsonNode root = objectMapper.readTree(resp);
-        if (!root.path("success").asBoolean(false))
-            throw new IllegalStateException(root.path("errors").toString());
-        // 本地删除交由后续同步清理，或可扩展 mapper 删除接口
     }
 
     private Zone zoneById(Long id) {
-        return zoneMapper.list(null, null, null).stream().filter(x -> x.getId().equals(id)).findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("zone 不存在"));
+        Zone z = zoneRegistry.byId(id);
+        if (z == null)
+            throw new IllegalArgumentException("zone 不存在");
+        return z;
     }
 
     private CfAccount accById(Long id) {
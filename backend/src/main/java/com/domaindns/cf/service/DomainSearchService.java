@@ -0,0 +1,127 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.mapper.DnsRecordMapper;
+import com.domaindns.cf.model.DnsRecord;
+import com.domaindns.cf.model.Zone;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 公共域名搜索：给定子域名前缀，列出所有已启用 zone 下的候选完整域名及是否可申请。
+ * 占用判断与申请时一致：本地镜像中已有同名记录，或有待生效（PENDING）的用户申请。
+ * 名称索引（OccupiedNameIndex）就绪时直接查内存，否则所有候选名称通过一次 IN 查询判断。
+ * 搜索结果只作提示，索引相对其他节点的写入有数秒延迟，申请时仍会再次校验。
+ * 被占用的 zone 附带最多 suggest 个可用的备选域名（见 NameSuggestions），只在名称索引就绪时生成，
+ * 同一请求内所有 zone 共用 zone.search.suggest-budget-ms 的时间预算，超时后剩余 zone 不再给出建议。
+ */
+@Service
+public class DomainSearchService {
+    // 单条 SQL 的 IN 列表上限，zone 更多时分批查询
+    private static final int NAMES_PER_QUERY = 1000;
+
+    private final ZoneRegistry zoneRegistry;
+    private final DnsRecordMapper dnsRecordMapper;
+    private final OccupiedNameIndex nameIndex;
+    private final int defaultSuggestions;
+    private final int maxSuggestions;
+    private final long suggestBudgetNanos;
+
+    public DomainSearchService(ZoneRegistry zoneRegistry, DnsRecordMapper dnsRecordMapper,
+            OccupiedNameIndex nameIndex,
+            @Value("${zone.search.suggestions:3}") int defaultSuggestions,
+            @Value("${zone.search.max-suggestions:10}") int maxSuggestions,
+            @Value("${zone.search.suggest-budget-ms:20}") long suggestBudgetMs) {
+        this.zoneRegistry = zoneRegistry;
+        this.dnsRecordMapper = dnsRecordMapper;
+        this.nameIndex = nameIndex;
+        this.maxSuggestions = Math.max(0, maxSuggestions);
+        this.defaultSuggestions = Math.max(0, Math.min(defaultSuggestions, this.maxSuggestions));
+        this.suggestBudgetNanos = Math.max(1, suggestBudgetMs) * 1_000_000;
+    }
+
+    public List<Map<String, Object>> search(String prefix) {
+        return search(prefix, null);
+    }
+
+    // suggest 为空时取 zone.search.suggestions，超过 zone.search.max-suggestions 时截断
+    public List<Map<String, Object>> search(String prefix, Integer suggest) {
+        int n = suggest == null ? defaultSuggestions : Math.max(0, Math.min(suggest, maxSuggestions));
+        return search(prefix, nameIndex.ready(), n);
+    }
+
+    // 跳过名称索引直接查库，供基准测试对比
+    public List<Map<String, Object>> searchFromDb(String prefix) {
+        return search(prefix, false, 0);
+    }
+
+    private List<Map<String, Object>> search(String prefix, boolean fromIndex, int suggest) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty())
+            return result;
+        List<Zone> zones = zoneRegistry.enabled(null);
+        List<String> names = new ArrayList<>(zones.size());
+        for (Zone z : zones)
+            names.add(prefix + "." + z.getName());
+        Set<String> occupied = fromIndex ? Set.of() : occupied(names);
+        for (int i = 0; i < zones.size(); i++) {
+            String full = names.get(i);
+            boolean exists = fromIndex ? nameIndex.isOccupied(zones.get(i), full)
+                    : occupied.contains(zones.get(i).getId() + ":" + full);
+            Map<String, Object> item = new HashMap<>();
+            item.put("domain", full);
+            item.put("available", !exists);
+            if (exists)
+                item.put("reason", "occupied");
+            result.add(item);
+        }
+        if (fromIndex && suggest > 0)
+            suggest(prefix, zones, result, suggest);
+        return result;
+    }
+
+    // 候选前缀只生成一次，按顺序逐个查名称索引，直到每个被占用的 zone 凑满 n 个或时间预算用完
+    private void suggest(String prefix, List<Zone> zones, List<Map<String, Object>> result, int n) {
+        List<String> candidates = null;
+        long deadline = System.nanoTime() + suggestBudgetNanos;
+        for (int i = 0; i < zones.size(); i++) {
+            Map<String, Object> item = result.get(i);
+            if (Boolean.TRUE.equals(item.get("available")))
+                continue;
+            if (candidates == null)
+                candidates = NameSuggestions.candidates(prefix);
+            if (candidates.isEmpty() || System.nanoTime() >= deadline)
+                return;
+            Zone z = zones.get(i);
+            List<String> picks = new ArrayList<>(n);
+            for (String c : candidates) {
+                String full = c + "." + z.getName();
+                if (!nameIndex.isOccupied(z, full)) {
+                    picks.add(full);
+                    if (picks.size() >= n)
+                        break;
+                }
+                if (System.nanoTime() >= deadline)
+                    break;
+            }
+            item.put("suggestions", picks);
+        }
+    }
+
+    // 返回已占用的 "zoneId:完整域名"；同一名称理论上可能落在不同 zone（前缀含点时），因此按 zone 区分
+    private Set<String> occupied(List<String> names) {
+        Set<String> out = new HashSet<>();
+        for (int i = 0; i < names.size(); i += NAMES_PER_QUERY) {
+            List<String> chunk = names.subList(i, Math.min(i + NAMES_PER_QUERY, names.size()));
+            for (DnsRecord r : dnsRecordMapper.findOccupiedNames(chunk))
+                out.add(r.getZoneId() + ":" + r.getName());
+        }
+        return out;
+    }
+}
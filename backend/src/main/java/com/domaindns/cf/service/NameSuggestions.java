@@ -0,0 +1,92 @@
+package com.domaindns.cf.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 前缀被占用时的备选前缀：数字后缀（blog2）、连字符（blog-2、blog-app）与常见前后缀（myblog、bloghq）。
+ * 三类轮流取一个，排在前面的建议尽量各不相同；只生成合法的单个 DNS 标签。
+ */
+final class NameSuggestions {
+    private static final Pattern LABEL = Pattern.compile("^[a-z0-9]([a-z0-9-]{0,61}[a-z0-9])?$");
+    // 末尾的数字单独拆出，blog7 被占用时从 blog8 开始建议
+    private static final Pattern TRAILING_DIGITS = Pattern.compile("^(.*?[a-z-])(\\d{1,4})$");
+    private static final int MAX_NUMBER = 99;
+    private static final int MAX_LABEL = 63;
+    private static final String[] HYPHEN_WORDS = { "app", "dev", "web", "online", "site", "cloud", "io", "hub" };
+    private static final String[] PREFIXES = { "my", "get", "the", "go", "try", "use" };
+    private static final String[] SUFFIXES = { "hq", "app", "lab", "now", "hub", "io" };
+
+    private NameSuggestions() {
+    }
+
+    // 按建议顺序返回候选前缀（不含 prefix 本身）；prefix 不是合法标签时返回空
+    static List<String> candidates(String prefix) {
+        String p = prefix.toLowerCase(Locale.ROOT);
+        if (!LABEL.matcher(p).matches())
+            return List.of();
+        String base = p;
+        String sep = "";
+        int from = 1;
+        Matcher m = TRAILING_DIGITS.matcher(p);
+        if (m.matches()) {
+            base = m.group(1);
+            if (base.endsWith("-")) {
+                base = base.substring(0, base.length() - 1);
+                sep = "-";
+            }
+            from = Integer.parseInt(m.group(2)) + 1;
+        }
+
+        List<String> numbered = new ArrayList<>();
+        List<String> hyphenated = new ArrayList<>();
+        List<String> affixed = new ArrayList<>();
+        for (int n = Math.max(from, 2); n <= Math.max(from, 2) + MAX_NUMBER; n++) {
+            numbered.add(base + sep + n);
+            hyphenated.add(base + "-" + n);
+        }
+        // 连字符组交错放入单词与数字，避免前几个建议全是 blog-2、blog-3
+        List<String> words = new ArrayList<>();
+        for (String w : HYPHEN_WORDS)
+            words.add(p + "-" + w);
+        hyphenated = interleave(List.of(words, hyphenated));
+        for (int i = 0; i < Math.max(PREFIXES.length, SUFFIXES.length); i++) {
+            if (i < PREFIXES.length)
+                affixed.add(PREFIXES[i] + p);
+            if (i < SUFFIXES.length)
+                affixed.add(p + SUFFIXES[i]);
+        }
+
+        Set<String> out = new LinkedHashSet<>();
+        for (String c : interleave(List.of(numbered, hyphenated, affixed))) {
+            // 各部分都是合法字符且不以连字符开头结尾，只需检查长度
+            if (!c.equals(p) && c.length() <= MAX_LABEL)
+                out.add(c);
+        }
+        return new ArrayList<>(out);
+    }
+
+    private static List<String> interleave(List<List<String>> groups) {
+        List<Iterator<String>> its = new ArrayList<>();
+        for (List<String> g : groups)
+            its.add(g.iterator());
+        List<String> out = new ArrayList<>();
+        boolean any = true;
+        while (any) {
+            any = false;
+            for (Iterator<String> it : its) {
+                if (it.hasNext()) {
+                    out.add(it.next());
+                    any = true;
+                }
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,310 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.mapper.DnsRecordMapper;
+import com.domaindns.cf.model.DnsRecord;
+import com.domaindns.cf.model.Zone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 已占用完整域名的内存索引，供域名搜索使用，不再每次查库。索引可能滞后于其他节点的写入，申请时的重复校验仍以数据库为准。
+ * 占用的定义与 DnsRecordMapper.findOccupiedNames 一致：镜像中有同名记录，或有 PENDING 的用户申请。
+ * 每个 zone 保存相对 zone 的标签（如 www，去掉 .example.com，字符串驻留以便多 zone 共享），
+ * 前面可选一个全局 Bloom 过滤器：标签在任何 zone 都未出现时一次判断即可返回，无需逐 zone 查。
+ * 维护方式：
+ * - 启动后首轮从库中全量构建，之后每 zone.name-index.rebuild-minutes 分钟重建一次（反映其他节点的删除）；
+ * - 每 zone.name-index.refresh-ms 毫秒按 updated_at 增量加载新增/变更的名称（反映其他节点的写入）；
+ * - 本节点的同步与记录增删改在写库后立即更新索引。
+ * 重建与增量加载在独立的单线程上执行，全量扫描不占用 Spring 默认的定时任务线程（outbox 轮询、定时同步）。
+ * 未构建完成或未启用时 ready() 为 false，调用方改为查库。
+ */
+@Component
+public class OccupiedNameIndex {
+    private static final Logger log = LoggerFactory.getLogger(OccupiedNameIndex.class);
+    // 增量加载回看的秒数，覆盖 updated_at 早于提交时间的长事务
+    private static final int OVERLAP_SECONDS = 5;
+    private static final int BLOOM_HASHES = 5;
+    // 单条 SQL 的 IN 列表上限
+    private static final int NAMES_PER_QUERY = 1000;
+
+    private final DnsRecordMapper recordMapper;
+    private final ZoneRegistry zoneRegistry;
+    private final boolean enabled;
+    private final long refreshMillis;
+    private final long rebuildMillis;
+    private final int bloomBitsPerName;
+    private final ScheduledExecutorService maintainer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "OccupiedNameIndex");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Snapshot current;
+    private volatile LocalDateTime watermark;
+    private volatile long builtAt;
+
+    public OccupiedNameIndex(DnsRecordMapper recordMapper, ZoneRegistry zoneRegistry,
+            @Value("${zone.name-index.enabled:true}") boolean enabled,
+            @Value("${zone.name-index.refresh-ms:2000}") long refreshMs,
+            @Value("${zone.name-index.rebuild-minutes:10}") long rebuildMinutes,
+            @Value("${zone.name-index.bloom-bits-per-name:10}") int bloomBitsPerName) {
+        this.recordMapper = recordMapper;
+        this.zoneRegistry = zoneRegistry;
+        this.enabled = enabled;
+        this.refreshMillis = Math.max(100, refreshMs);
+        this.rebuildMillis = Math.max(1, rebuildMinutes) * 60_000;
+        this.bloomBitsPerName = Math.max(0, bloomBitsPerName);
+    }
+
+    public boolean ready() {
+        return current != null;
+    }
+
+    // 调用前先确认 ready()
+    public boolean isOccupied(Zone z, String fqdn) {
+        Snapshot s = current;
+        String label = label(z, fqdn);
+        if (s.contains(z.getId(), label))
+            return true;
+        // 写入时 zone 尚未进入 ZoneRegistry 的名称按完整名称保存
+        String name = fqdn.toLowerCase(Locale.ROOT);
+        return !name.equals(label) && s.contains(z.getId(), name);
+    }
+
+    // 本节点写入后调用：names 已确定被占用（新增记录、PENDING 申请）
+    public void addAll(Long zoneId, Collection<String> fqdns) {
+        Snapshot s = current;
+        if (s == null || fqdns.isEmpty())
+            return;
+        Zone z = zoneRegistry.byId(zoneId);
+        for (String fqdn : fqdns)
+            s.add(zoneId, label(z, fqdn));
+    }
+
+    // 本节点删除或改名后调用：按库中现状重新判断这些名称（可能仍有其他同名记录）
+    public void refresh(Long zoneId, Collection<String> fqdns) {
+        Snapshot s = current;
+        if (s == null || fqdns.isEmpty())
+            return;
+        try {
+            Set<String> occupied = new HashSet<>();
+            List<String> all = new ArrayList<>(fqdns);
+            for (int i = 0; i < all.size(); i += NAMES_PER_QUERY) {
+                List<String> chunk = all.subList(i, Math.min(all.size(), i + NAMES_PER_QUERY));
+                for (DnsRecord r : recordMapper.findOccupiedNames(chunk)) {
+                    if (zoneId.equals(r.getZoneId()))
+                        occupied.add(r.getName().toLowerCase(Locale.ROOT));
+                }
+            }
+            Zone z = zoneRegistry.byId(zoneId);
+            for (String fqdn : fqdns) {
+                String label = label(z, fqdn);
+                String name = fqdn.toLowerCase(Locale.ROOT);
+                if (occupied.contains(name)) {
+                    s.add(zoneId, label);
+                } else {
+                    s.remove(zoneId, label);
+                    s.remove(zoneId, name);
+                }
+            }
+        } catch (RuntimeException e) {
+            // 索引与库不一致时以库为准：下次重建前宁可多报占用，不影响写入
+            log.warn("刷新 zone {} 名称索引失败: {}", zoneId, e.getMessage());
+        }
+    }
+
+    // 全量同步删除了记录后调用：删除的名称未知，按库中现状重建该 zone
+    public void reloadZone(Long zoneId) {
+        Snapshot s = current;
+        if (s == null)
+            return;
+        try {
+            Zone z = zoneRegistry.byId(zoneId);
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            for (DnsRecord r : recordMapper.listOccupiedByZone(zoneId)) {
+                String label = label(z, r.getName()).intern();
+                names.add(label);
+                if (s.bloom != null)
+                    s.bloom.add(label);
+            }
+            s.zones.put(zoneId, names);
+        } catch (RuntimeException e) {
+            log.warn("重建 zone {} 名称索引失败: {}", zoneId, e.getMessage());
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled)
+            maintainer.scheduleWithFixedDelay(this::maintain, 0, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        maintainer.shutdownNow();
+    }
+
+    // 由 maintainer 线程定期调用；压测等需要立即可用的场景也可直接调用，与后台维护互斥
+    public synchronized void maintain() {
+        if (!enabled)
+            return;
+        try {
+            if (current == null || System.currentTimeMillis() - builtAt >= rebuildMillis)
+                rebuild();
+            else
+                loadChanges();
+        } catch (RuntimeException e) {
+            log.warn("维护域名占用索引失败: {}", e.getMessage());
+        }
+    }
+
+    // 全量构建后整体替换；构建期间本节点对旧索引的写入由随后的增量加载补上
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        LocalDateTime from = recordMapper.dbNow();
+        Map<Long, Set<String>> zones = new ConcurrentHashMap<>();
+        long[] count = new long[1];
+        recordMapper.scanOccupiedNames(null, ctx -> {
+            DnsRecord r = ctx.getResultObject();
+            String label = label(zoneRegistry.byId(r.getZoneId()), r.getName()).intern();
+            zones.computeIfAbsent(r.getZoneId(), k -> ConcurrentHashMap.newKeySet()).add(label);
+            count[0]++;
+        });
+        // 名称总数确定后再按 bloom-bits-per-name 分配过滤器
+        Bloom bloom = null;
+        if (bloomBitsPerName > 0) {
+            bloom = new Bloom(count[0] * bloomBitsPerName);
+            for (Set<String> names : zones.values()) {
+                for (String label : names)
+                    bloom.add(label);
+            }
+        }
+        current = new Snapshot(zones, bloom);
+        watermark = from;
+        builtAt = System.currentTimeMillis();
+        log.info("域名占用索引已重建：{} 个 zone，{} 个名称，耗时 {}ms", zones.size(), count[0], builtAt - start);
+    }
+
+    private void loadChanges() {
+        Snapshot s = current;
+        LocalDateTime from = recordMapper.dbNow();
+        LocalDateTime since = watermark.minusSeconds(OVERLAP_SECONDS);
+        recordMapper.scanOccupiedNames(since, ctx -> {
+            DnsRecord r = ctx.getResultObject();
+            s.add(r.getZoneId(), label(zoneRegistry.byId(r.getZoneId()), r.getName()));
+        });
+        watermark = from;
+    }
+
+    // 相对 zone 的标签，zone 顶点为 @；zone 未知或名称不在 zone 下时保留完整名称
+    static String label(Zone z, String fqdn) {
+        String name = fqdn.toLowerCase(Locale.ROOT);
+        if (z == null || z.getName() == null)
+            return name;
+        String zone = z.getName().toLowerCase(Locale.ROOT);
+        if (name.equals(zone))
+            return "@";
+        if (name.length() > zone.length() + 1 && name.endsWith(zone)
+                && name.charAt(name.length() - zone.length() - 1) == '.')
+            return name.substring(0, name.length() - zone.length() - 1);
+        return name;
+    }
+
+    private static final class Snapshot {
+        final Map<Long, Set<String>> zones;
+        final Bloom bloom;
+
+        Snapshot(Map<Long, Set<String>> zones, Bloom bloom) {
+            this.zones = zones;
+            this.bloom = bloom;
+        }
+
+        void add(Long zoneId, String label) {
+            label = label.intern();
+            zones.computeIfAbsent(zoneId, k -> ConcurrentHashMap.newKeySet()).add(label);
+            if (bloom != null)
+                bloom.add(label);
+        }
+
+        boolean contains(Long zoneId, String label) {
+            if (bloom != null && !bloom.mightContain(label))
+                return false;
+            Set<String> names = zones.get(zoneId);
+            return names != null && names.contains(label);
+        }
+
+        void remove(Long zoneId, String label) {
+            // Bloom 过滤器不支持删除，多出的位只会让查询多走一步集合查找，重建时清除
+            Set<String> names = zones.get(zoneId);
+            if (names != null)
+                names.remove(label);
+        }
+    }
+
+    // 位数取 2 的幂，双重哈希生成 BLOOM_HASHES 个位置；位数组可并发写入
+    static final class Bloom {
+        private final AtomicLongArray bits;
+        private final long mask;
+
+        Bloom(long expectedBits) {
+            long size = Long.highestOneBit(Math.max(1 << 16, Math.min(expectedBits, 1L << 34)) - 1) << 1;
+            this.bits = new AtomicLongArray((int) (size >>> 6));
+            this.mask = size - 1;
+        }
+
+        void add(String s) {
+            long h = hash(s);
+            long h2 = (h >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = (h + i * h2) & mask;
+                int word = (int) (bit >>> 6);
+                long m = 1L << (bit & 63);
+                long old;
+                while (((old = bits.get(word)) & m) == 0 && !bits.compareAndSet(word, old, old | m)) {
+                }
+            }
+        }
+
+        boolean mightContain(String s) {
+            long h = hash(s);
+            long h2 = (h >>> 32) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                long bit = (h + i * h2) & mask;
+                if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        // FNV-1a 64 位，末尾再做一次混合，让低位分布均匀
+        private static long hash(String s) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.dto.SyncDtos.SyncSummary;
+import com.domaindns.cf.mapper.SyncJobMapper;
+import com.domaindns.cf.model.SyncJob;
+import com.domaindns.cf.model.Zone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台批量同步任务：提交时在 sync_jobs 写入一条 PENDING 记录并立即返回任务 ID，
+ * 由 syncJobExecutor 按顺序执行，执行中更新进度（total/done/failed），结束时写入 SUCCESS/FAILED 与耗时。
+ * 同类型、同账户范围已有未结束的任务时直接返回该任务，不重复排队。
+ * 任务执行期间持有 SyncLease，多节点部署时同一时刻只有一个节点在执行同步。
+ * 已结束的记录保留 sync.job-retention-days 天，每小时清理一次；各 zone 最近一次成功的同步不删除，增量同步依赖其水位线。
+ */
+@Service
+public class SyncJobService {
+    private static final Logger log = LoggerFactory.getLogger(SyncJobService.class);
+    static final String JOB_ZONES = "ZONES";
+    private static final int PURGE_BATCH = 1000;
+
+    private final SyncJobMapper jobMapper;
+    private final ZoneService zoneService;
+    private final ZoneSyncEngine syncEngine;
+    private final ZoneRegistry zoneRegistry;
+    private final SyncLease syncLease;
+    private final ZoneSyncPolicy syncPolicy;
+    private final Executor executor;
+    private final long timeoutMinutes;
+    private final int retentionDays;
+
+    public SyncJobService(SyncJobMapper jobMapper, ZoneService zoneService, ZoneSyncEngine syncEngine,
+            ZoneRegistry zoneRegistry, SyncLease syncLease, ZoneSyncPolicy syncPolicy,
+            @Qualifier("syncJobExecutor") Executor executor,
+            @Value("${sync.job-timeout-minutes:120}") long timeoutMinutes,
+            @Value("${sync.job-retention-days:7}") int retentionDays) {
+        this.jobMapper = jobMapper;
+        this.zoneService = zoneService;
+        this.syncEngine = syncEngine;
+        this.zoneRegistry = zoneRegistry;
+        this.syncLease = syncLease;
+        this.syncPolicy = syncPolicy;
+        this.executor = executor;
+        this.timeoutMinutes = Math.max(1, timeoutMinutes);
+        this.retentionDays = Math.max(1, retentionDays);
+    }
+
+    // 同步 zone 列表；cfAccountId 为空时同步所有启用账户
+    public synchronized Long submitZones(Long cfAccountId, String triggeredBy) {
+        SyncJob active = jobMapper.findActiveBatch(JOB_ZONES, cfAccountId);
+        if (active != null)
+            return active.getId();
+        SyncJob job = pending(JOB_ZONES, cfAccountId, triggeredBy);
+        executor.execute(() -> run(job, progress -> {
+            if (cfAccountId == null)
+                return "zones " + zoneService.syncAll(progress);
+            progress.start(1);
+            int saved = zoneService.syncByAccount(cfAccountId);
+            progress.step(true);
+            return "zones " + saved;
+        }));
+        return job.getId();
+    }
+
+    // 同步所有已启用 zone 的 DNS 记录（各 zone 走增量同步）
+    public Long submitDnsRecords(String triggeredBy) {
+        return submitDnsRecords(triggeredBy, false);
+    }
+
+    // dueOnly 为 true 时只同步按自适应间隔已到期的 zone（定时同步使用）
+    public synchronized Long submitDnsRecords(String triggeredBy, boolean dueOnly) {
+        SyncJob active = jobMapper.findActiveBatch(DnsRecordService.JOB_DNS_RECORDS, null);
+        if (active != null)
+            return active.getId();
+        SyncJob job = pending(DnsRecordService.JOB_DNS_RECORDS, null, triggeredBy);
+        executor.execute(() -> run(job, progress -> {
+            List<Zone> zones = dueOnly ? syncPolicy.dueZones() : zoneRegistry.enabled(null);
+            SyncSummary s = syncEngine.syncZones(zones, progress);
+            job.setUpserted(s.upserted);
+            job.setDeleted(s.deleted);
+            if (s.failed > 0)
+                throw new IllegalStateException("部分 zone 同步失败: " + s.failed + "/" + s.zones);
+            return null;
+        }));
+        return job.getId();
+    }
+
+    public SyncJob get(Long id) {
+        SyncJob j = jobMapper.findById(id);
+        if (j == null)
+            throw new IllegalArgumentException("同步任务不存在");
+        return j;
+    }
+
+    public List<SyncJob> recent(int limit) {
+        return jobMapper.listBatches(Math.max(1, Math.min(limit, 100)));
+    }
+
+    // 清理超过 sync.job-timeout-minutes 没有进展的任务
+    public int failStaleJobs() {
+        int n = jobMapper.failStale(timeoutMinutes);
+        if (n > 0)
+            log.warn("{} 个同步任务超时未完成，已标记为失败", n);
+        return n;
+    }
+
+    // 分批删除，避免一次性长时间锁表；多节点同时执行也只是各删一部分
+    @Scheduled(cron = "${sync.job-purge-cron:0 17 * * * *}")
+    public int purgeOldJobs() {
+        int total = 0;
+        try {
+            int n;
+            do {
+                n = jobMapper.purgeFinished(retentionDays, PURGE_BATCH);
+                total += n;
+            } while (n == PURGE_BATCH);
+        } catch (RuntimeException e) {
+            log.warn("清理历史同步任务失败: {}", e.getMessage());
+        }
+        if (total > 0)
+            log.info("已清理 {} 条 {} 天前的同步任务记录", total, retentionDays);
+        return total;
+    }
+
+    private SyncJob pending(String jobType, Long cfAccountId, String triggeredBy) {
+        SyncJob job = new SyncJob();
+        job.setJobType(jobType);
+        job.setCfAccountId(cfAccountId);
+        job.setStatus("PENDING");
+        // 只有 DNS 记录同步区分模式（各 zone 走增量同步），zone 列表同步不写 sync_mode
+        if (DnsRecordService.JOB_DNS_RECORDS.equals(jobType))
+            job.setSyncMode(DnsRecordService.MODE_INCREMENTAL);
+        job.setTriggeredBy(triggeredBy);
+        jobMapper.insert(job);
+        return job;
+    }
+
+    private void run(SyncJob job, JobBody body) {
+        if (jobMapper.markRunning(job.getId()) == 0) {
+            // 排队期间已被标记为超时失败
+            log.warn("同步任务 {} 已不是 PENDING 状态，跳过", job.getId());
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Progress progress = new Progress(job.getId());
+        String message = null;
+        boolean ok = false;
+        // 整个任务持有同步租约；其他节点正在同步时等待其结束，等待超时则任务失败。
+        // 执行期间租约丢失（已被其他节点接手）时任务同样记为失败
+        try (SyncLease.Lease lease = syncLease.acquire()) {
+            message = body.run(progress);
+            lease.check();
+            ok = true;
+        } catch (RuntimeException e) {
+            message = e.getMessage();
+            log.warn("同步任务 {} ({}) 失败: {}", job.getId(), job.getJobType(), e.getMessage());
+        } finally {
+            job.setStatus(ok ? "SUCCESS" : "FAILED");
+            job.setMessage(message == null ? null : message.substring(0, Math.min(message.length(), 500)));
+            job.setTotal(progress.total);
+            job.setDone(progress.done.get());
+            job.setFailed(progress.failed.get());
+            job.setFinishedAt(LocalDateTime.now());
+            job.setDurationMs(System.currentTimeMillis() - start);
+            jobMapper.finish(job);
+        }
+    }
+
+    @FunctionalInterface
+    private interface JobBody {
+        // 返回写入 message 的说明，失败时抛异常
+        String run(SyncProgress progress);
+    }
+
+    private final class Progress implements SyncProgress {
+        private final Long jobId;
+        private volatile int total;
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        Progress(Long jobId) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        public void start(int total) {
+            this.total = total;
+            jobMapper.updateProgress(jobId, total, 0, 0);
+        }
+
+        @Override
+        public void step(boolean success) {
+            int f = success ? failed.get() : failed.incrementAndGet();
+            jobMapper.updateProgress(jobId, total, done.incrementAndGet(), f);
+        }
+    }
+}
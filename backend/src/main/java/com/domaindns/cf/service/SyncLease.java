@@ -0,0 +1,218 @@
+package com.domaindns.cf.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同步主节点租约：多副本部署时保证同一时刻只有一个节点在做 Cloudflare 同步。
+ * 租约存放在 Redis（值为 节点ID|fencing token，带过期时间），持有期间后台按 ttl/3 续期；
+ * 持有节点宕机后租约自然过期，其他节点即可接手。每次重新获得租约 fencing token 递增，
+ * 续期/释放都按完整值比对，旧持有者恢复后无法误续或误删新租约，同步过程中通过 Lease.check() 发现租约已丢失并停止写入。
+ * 租约按节点计数可重入：同一节点内并发的同步线程共享一份租约。Redis 不可用时放行，不影响单节点部署。
+ */
+@Component
+public class SyncLease {
+    private static final Logger log = LoggerFactory.getLogger(SyncLease.class);
+    private static final String KEY = "sync:lease";
+    private static final String FENCE_KEY = "sync:lease:fence";
+    // 重试获取租约的间隔
+    private static final long RETRY_MS = 500;
+
+    // 返回 fencing token；租约被其他节点持有时返回 0
+    private static final DefaultRedisScript<Long> ACQUIRE = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) "
+                    + "if v then "
+                    + "  local sep = string.find(v, '|', 1, true) "
+                    + "  if sep and string.sub(v, 1, sep - 1) == ARGV[1] then "
+                    + "    redis.call('PEXPIRE', KEYS[1], ARGV[2]) "
+                    + "    return tonumber(string.sub(v, sep + 1)) "
+                    + "  end "
+                    + "  return 0 "
+                    + "end "
+                    + "local t = redis.call('INCR', KEYS[2]) "
+                    + "redis.call('SET', KEYS[1], ARGV[1] .. '|' .. t, 'PX', ARGV[2]) "
+                    + "return t",
+            Long.class);
+    private static final DefaultRedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0",
+            Long.class);
+    private static final DefaultRedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final boolean enabled;
+    private final long ttlMs;
+    private final long waitMs;
+    private final String nodeId;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SyncLease-renew");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // 以下状态由 this 保护；token 与 lost 另由 Lease.check() 在同步线程中无锁读取
+    private int holders;
+    private volatile long token;
+    private volatile boolean lost;
+    private ScheduledFuture<?> renewal;
+
+    public SyncLease(StringRedisTemplate redis,
+            @Value("${sync.lease.enabled:true}") boolean enabled,
+            @Value("${sync.lease.ttl-seconds:30}") long ttlSeconds,
+            @Value("${sync.lease.wait-seconds:10}") long waitSeconds) {
+        this.redis = redis;
+        this.enabled = enabled;
+        this.ttlMs = Math.max(3, ttlSeconds) * 1000;
+        this.waitMs = Math.max(0, waitSeconds) * 1000;
+        this.nodeId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    // 获取租约，被其他节点持有时最多等待 sync.lease.wait-seconds（默认很短，调用方多为请求线程或单线程的任务执行器，
+    // 其他节点的同步可能持续很久，不在这里排队，直接报错让用户稍后重试）
+    public Lease acquire() {
+        long deadline = System.currentTimeMillis() + waitMs;
+        while (true) {
+            Lease l = tryAcquire();
+            if (l != null)
+                return l;
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                throw new IllegalStateException("其他节点正在同步，请稍后重试");
+            try {
+                Thread.sleep(Math.min(RETRY_MS, left));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待同步租约被中断");
+            }
+        }
+    }
+
+    // 立即尝试获取租约，被其他节点持有时返回 null
+    public synchronized Lease tryAcquire() {
+        if (!enabled)
+            return new Lease(0);
+        if (holders > 0 && !lost) {
+            holders++;
+            return new Lease(token);
+        }
+        long t;
+        try {
+            Long r = redis.execute(ACQUIRE, Arrays.asList(KEY, FENCE_KEY), nodeId, String.valueOf(ttlMs));
+            t = r == null ? 0 : r;
+        } catch (Exception e) {
+            log.warn("获取同步租约失败，直接放行: {}", e.getMessage());
+            return new Lease(0);
+        }
+        if (t == 0)
+            return null;
+        if (holders > 0)
+            log.warn("同步租约曾丢失，已重新获得 (token {} -> {})", token, t);
+        token = t;
+        lost = false;
+        holders++;
+        if (renewal == null) {
+            long period = ttlMs / 3;
+            renewal = renewer.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+        }
+        log.debug("节点 {} 获得同步租约 token={}", nodeId, t);
+        return new Lease(t);
+    }
+
+    private synchronized void renew() {
+        if (holders == 0 || lost)
+            return;
+        try {
+            Long r = redis.execute(RENEW, Collections.singletonList(KEY), value(token), String.valueOf(ttlMs));
+            if (r == null || r == 0) {
+                lost = true;
+                log.error("节点 {} 的同步租约已丢失 (token={})，正在进行的同步将中止", nodeId, token);
+            }
+        } catch (Exception e) {
+            // Redis 暂时不可用：其他节点同样拿不到租约，继续持有
+            log.warn("同步租约续期失败: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void release(long t) {
+        if (t == 0 || holders == 0)
+            return;
+        if (--holders > 0)
+            return;
+        if (renewal != null) {
+            renewal.cancel(false);
+            renewal = null;
+        }
+        if (lost)
+            return;
+        try {
+            redis.execute(RELEASE, Collections.singletonList(KEY), value(token));
+        } catch (Exception e) {
+            log.warn("释放同步租约失败，等待自动过期: {}", e.getMessage());
+        }
+    }
+
+    private String value(long t) {
+        return nodeId + "|" + t;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+
+    /**
+     * 一次租约持有，使用 try-with-resources 释放。token 为 0 表示未启用租约或 Redis 不可用时的放行。
+     */
+    public final class Lease implements AutoCloseable {
+        private final long fencingToken;
+        private boolean closed;
+
+        private Lease(long fencingToken) {
+            this.fencingToken = fencingToken;
+        }
+
+        public long token() {
+            return fencingToken;
+        }
+
+        // 在写库前调用：租约已丢失或已被其他节点以新 token 接手时抛异常
+        public void check() {
+            if (fencingToken == 0)
+                return;
+            if (lost || fencingToken != token)
+                throw new IllegalStateException("同步租约已失效 (token=" + fencingToken + ")，停止同步");
+        }
+
+        @Override
+        public void close() {
+            if (closed)
+                return;
+            closed = true;
+            release(fencingToken);
+        }
+    }
+}
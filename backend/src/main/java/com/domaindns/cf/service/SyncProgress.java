@@ -0,0 +1,18 @@
+package com.domaindns.cf.service;
+
+/**
+ * 批量同步的进度回调，由 SyncJobService 写入 sync_jobs。
+ * 回调可能在同步线程池的任意线程上触发。
+ */
+public interface SyncProgress {
+    SyncProgress NONE = new SyncProgress() {
+    };
+
+    // 本次要处理的账户数 / zone 数
+    default void start(int total) {
+    }
+
+    // 每完成一个账户 / zone 调用一次
+    default void step(boolean success) {
+    }
+}
@@ -0,0 +1,91 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.settings.SettingsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * 按系统设置 sync_cron_expression 定时提交同步任务：先同步各账户的 zone 列表，再同步已启用且按自适应间隔到期的 zone 的 DNS 记录。
+ * 每次计算下次触发时间时重新读取设置，修改后无需重启；设为 "-" 表示关闭定时同步。
+ * 表达式无效时使用默认值并记录警告。
+ */
+@Component
+public class SyncScheduler implements SchedulingConfigurer {
+    private static final Logger log = LoggerFactory.getLogger(SyncScheduler.class);
+    static final String CRON_KEY = "sync_cron_expression";
+    static final String DEFAULT_CRON = "0 */5 * * * *";
+    private static final String DISABLED = "-";
+    // 关闭定时同步时，隔多久再检查一次设置
+    private static final long DISABLED_RECHECK_SECONDS = 60;
+
+    private final SettingsService settingsService;
+    private final SyncJobService jobService;
+    private final SyncLease syncLease;
+    private final boolean enabled;
+
+    public SyncScheduler(SettingsService settingsService, SyncJobService jobService, SyncLease syncLease,
+            @Value("${sync.scheduler.enabled:true}") boolean enabled) {
+        this.settingsService = settingsService;
+        this.jobService = jobService;
+        this.syncLease = syncLease;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        if (!enabled) {
+            log.info("定时同步已通过 sync.scheduler.enabled 关闭");
+            return;
+        }
+        registrar.addTriggerTask(this::tick, ctx -> {
+            String cron = currentCron();
+            if (DISABLED.equals(cron))
+                return Instant.now().plusSeconds(DISABLED_RECHECK_SECONDS);
+            return new CronTrigger(cron).nextExecution(ctx);
+        });
+    }
+
+    // 多节点部署时每个节点都会触发；拿不到同步租约说明其他节点正在同步，本节点跳过本轮
+    void tick() {
+        try (SyncLease.Lease lease = syncLease.tryAcquire()) {
+            if (lease == null) {
+                log.debug("同步租约由其他节点持有，跳过本轮定时同步");
+                return;
+            }
+            jobService.failStaleJobs();
+            if (DISABLED.equals(currentCron()))
+                return;
+            Long zonesJob = jobService.submitZones(null, "CRON");
+            Long recordsJob = jobService.submitDnsRecords("CRON", true);
+            log.debug("定时同步已提交: zones job={}, records job={}", zonesJob, recordsJob);
+        } catch (Exception e) {
+            // 数据库等异常只记录，下次照常触发
+            log.warn("提交定时同步任务失败: {}", e.getMessage());
+        }
+    }
+
+    private String currentCron() {
+        String v;
+        try {
+            v = settingsService.get(CRON_KEY, DEFAULT_CRON);
+        } catch (Exception e) {
+            log.warn("读取 {} 失败，使用默认值: {}", CRON_KEY, e.getMessage());
+            return DEFAULT_CRON;
+        }
+        v = v == null ? "" : v.trim();
+        if (v.isEmpty())
+            return DEFAULT_CRON;
+        if (DISABLED.equals(v) || CronExpression.isValidExpression(v))
+            return v;
+        log.warn("{} 无效: {}，使用默认值 {}", CRON_KEY, v, DEFAULT_CRON);
+        return DEFAULT_CRON;
+    }
+}
@@ -0,0 +1,170 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.mapper.ZoneMapper;
+import com.domaindns.cf.model.Zone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 进程内 zone 索引：按库 ID、zone 名称、Cloudflare zone ID 常数时间查找，替代逐次查库/全表扫描。
+ * 首次访问时加载；ZoneService 同步 zone 或启停后整体刷新；快照超过 zone.registry.max-age-seconds
+ * 后由下一次访问触发刷新，用于感知其他节点上的变更。
+ * 返回的 Zone 对象为共享快照，调用方不要修改。
+ */
+@Component
+public class ZoneRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ZoneRegistry.class);
+    private final ZoneMapper zoneMapper;
+    private final long maxAgeMs;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot;
+
+    public ZoneRegistry(ZoneMapper zoneMapper, @Value("${zone.registry.max-age-seconds:60}") long maxAgeSeconds) {
+        this.zoneMapper = zoneMapper;
+        this.maxAgeMs = Math.max(1, maxAgeSeconds) * 1000;
+    }
+
+    public Zone byId(Long id) {
+        if (id == null)
+            return null;
+        Zone z = current().byId.get(id);
+        return z != null ? z : remember(zoneMapper.findById(id));
+    }
+
+    public Zone byName(String name) {
+        if (name == null)
+            return null;
+        Zone z = current().byName.get(name.toLowerCase(Locale.ROOT));
+        return z != null ? z : remember(zoneMapper.findByName(name));
+    }
+
+    public Zone byCfZoneId(String cfZoneId) {
+        if (cfZoneId == null)
+            return null;
+        Zone z = current().byCfId.get(cfZoneId);
+        return z != null ? z : remember(zoneMapper.findByCfZoneId(cfZoneId));
+    }
+
+    // 已启用的 zone，按 ID 倒序；name 非空时按名称包含过滤（与 ZoneMapper.list 一致）
+    public List<Zone> enabled(String name) {
+        List<Zone> all = current().enabled;
+        if (name == null || name.isEmpty())
+            return all;
+        String needle = name.toLowerCase(Locale.ROOT);
+        List<Zone> out = new ArrayList<>();
+        for (Zone z : all) {
+            if (z.getName() != null && z.getName().toLowerCase(Locale.ROOT).contains(needle))
+                out.add(z);
+        }
+        return out;
+    }
+
+    // 从数据库整体重建索引
+    public synchronized void refresh() {
+        snapshot = new Snapshot(zoneMapper.list(null, null, null));
+    }
+
+    // 全量同步更新指纹后同步到索引，避免下次同步拿到旧指纹
+    public synchronized void updateFingerprint(Long id, String fingerprint) {
+        Snapshot s = snapshot;
+        if (s == null || !s.byId.containsKey(id))
+            return;
+        Zone copy = copyOf(s.byId.get(id));
+        copy.setRecordsFingerprint(fingerprint);
+        snapshot = s.with(copy);
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null)
+                    refresh();
+                return snapshot;
+            }
+        }
+        // 过期后只让一个线程刷新，其余线程继续用旧快照
+        if (System.currentTimeMillis() - s.loadedAt > maxAgeMs && refreshing.compareAndSet(false, true)) {
+            try {
+                refresh();
+                s = snapshot;
+            } catch (RuntimeException e) {
+                log.warn("刷新 zone 索引失败，继续使用旧数据: {}", e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return s;
+    }
+
+    // 索引中没有、但库里查到的 zone（如其他节点刚同步的）补进当前快照
+    private synchronized Zone remember(Zone z) {
+        if (z != null && snapshot != null)
+            snapshot = snapshot.with(z);
+        return z;
+    }
+
+    private static Zone copyOf(Zone src) {
+        Zone z = new Zone();
+        z.setId(src.getId());
+        z.setCfAccountId(src.getCfAccountId());
+        z.setZoneId(src.getZoneId());
+        z.setName(src.getName());
+        z.setStatus(src.getStatus());
+        z.setEnabled(src.getEnabled());
+        z.setSyncedAt(src.getSyncedAt());
+        z.setRecordsFingerprint(src.getRecordsFingerprint());
+        z.setSyncIntervalSec(src.getSyncIntervalSec());
+        z.setNextSyncAt(src.getNextSyncAt());
+        z.setPendingChanges(src.getPendingChanges());
+        z.setCreatedAt(src.getCreatedAt());
+        return z;
+    }
+
+    private static final class Snapshot {
+        final long loadedAt;
+        final Map<Long, Zone> byId = new HashMap<>();
+        final Map<String, Zone> byName = new HashMap<>();
+        final Map<String, Zone> byCfId = new HashMap<>();
+        final List<Zone> enabled;
+
+        Snapshot(Collection<Zone> zones) {
+            this(zones, System.currentTimeMillis());
+        }
+
+        private Snapshot(Collection<Zone> zones, long loadedAt) {
+            this.loadedAt = loadedAt;
+            List<Zone> en = new ArrayList<>();
+            for (Zone z : zones) {
+                byId.put(z.getId(), z);
+                if (z.getName() != null)
+                    byName.put(z.getName().toLowerCase(Locale.ROOT), z);
+                if (z.getZoneId() != null)
+                    byCfId.put(z.getZoneId(), z);
+                if (z.getEnabled() != null && z.getEnabled() == 1)
+                    en.add(z);
+            }
+            en.sort(Comparator.comparing(Zone::getId).reversed());
+            this.enabled = Collections.unmodifiableList(en);
+        }
+
+        // 替换单个 zone 后的新快照，不改变加载时间
+        Snapshot with(Zone z) {
+            Map<Long, Zone> m = new HashMap<>(byId);
+            m.put(z.getId(), z);
+            return new Snapshot(m.values(), loadedAt);
+        }
+    }
+}
@@ -1,37 +1,89 @@
 package com.domaindns.cf.service;
 
+import com.domaindns.cf.dto.SyncDtos.CfPage;
 import com.domaindns.cf.mapper.CfAccountMapper;
 import com.domaindns.cf.mapper.ZoneMapper;
 import com.domaindns.cf.model.CfAccount;
 import com.domaindns.cf.model.Zone;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ZoneService {
     private static final Logger log = LoggerFactory.getLogger(ZoneService.class);
+    private static final int ZONES_PER_PAGE = 50;
     private final ZoneMapper zoneMapper;
     private final CfAccountMapper accMapper;
     private final CfClient client;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ZoneRegistry zoneRegistry;
+    private final SyncLease syncLease;
+    private final Executor syncExecutor;
+    private final int pagePrefetch;
 
-    public ZoneService(ZoneMapper zoneMapper, CfAccountMapper accMapper, CfClient client) {
+    public ZoneService(ZoneMapper zoneMapper, CfAccountMapper accMapper, CfClient client, ZoneRegistry zoneRegistry,
+            SyncLease syncLease, @Qualifier("syncTaskExecutor") Executor syncExecutor,
+            @Value("${sync.page-prefetch:4}") int pagePrefetch) {
         this.zoneMapper = zoneMapper;
         this.accMapper = accMapper;
         this.client = client;
+        this.zoneRegistry = zoneRegistry;
+        this.syncLease = syncLease;
+        this.syncExecutor = syncExecutor;
+        this.pagePrefetch = Math.max(1, pagePrefetch);
     }
 
     public int syncAll() {
-        return accMapper.findAll(1).stream().mapToInt(a -> syncByAccount(a.getId())).sum();
+        return syncAll(SyncProgress.NONE);
+    }
+
+    // 各账户并发同步，线程数受 sync.concurrency 限制；任一账户失败则整体失败，与原串行语义一致。
+    // 整轮同步持有同步租约，各账户的工作线程在本节点内共享该租约
+    public int syncAll(SyncProgress progress) {
+        try (SyncLease.Lease lease = syncLease.acquire()) {
+            return syncAccounts(lease, progress);
+        }
+    }
+
+    private int syncAccounts(SyncLease.Lease lease, SyncProgress progress) {
+        lease.check();
+        List<CfAccount> accounts = accMapper.findAll(1);
+        progress.start(accounts.size());
+        List<CompletableFuture<Integer>> futures = accounts.stream()
+                .map(a -> CompletableFuture.supplyAsync(() -> syncByAccount(lease, a.getId()), syncExecutor)
+                        .whenComplete((n, e) -> progress.step(e == null)))
+                .collect(Collectors.toList());
+        int total = 0;
+        for (CompletableFuture<Integer> f : futures) {
+            try {
+                total += f.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re)
+                    throw re;
+                throw e;
+            }
+        }
+        return total;
     }
 
     public int syncByAccount(Long cfAccountId) {
+        try (SyncLease.Lease lease = syncLease.acquire()) {
+            return syncByAccount(lease, cfAccountId);
+        }
+    }
+
+    private int syncByAccount(SyncLease.Lease lease, Long cfAccountId) {
         CfAccount a = accMapper.findById(cfAccountId);
         if (a == null)
             throw new IllegalArgumentException("Cloudflare 账户不存在: " + cfAccountId);
@@ -39,51 +91,41 @@ public class ZoneService {
             log.debug("CF account {} disabled, skip sync", cfAccountId);
             return 0;
         }
-        int page = 1, per = 50;
+        return syncByAccount(lease, a);
+    }
+
+    private int syncByAccount(SyncLease.Lease lease, CfAccount a) {
+        Long cfAccountId = a.getId();
         int totalSaved = 0;
-        while (true) {
-            String json = client.listZones(a, page, per).block();
-            try {
-                JsonNode root = objectMapper.readTree(json);
-                if (!root.path("success").asBoolean(true)) {
-                    String err = root.path("errors").toString();
-                    log.warn("CF listZones error: {}", err);
-                    throw new IllegalStateException("Cloudflare API 错误: " + err);
-                }
-                JsonNode result = root.get("result");
-                int pageSaved = 0;
-                if (result != null && result.isArray()) {
-                    for (JsonNode n : result) {
-                        Zone z = new Zone();
-                        z.setCfAccountId(cfAccountId);
-                        z.setZoneId(n.path("id").asText());
-                        z.setName(n.path("name").asText());
-                        z.setStatus(n.path("status").asText("unknown"));
-                        z.setEnabled(0);
-                        z.setSyncedAt(LocalDateTime.now());
-                        zoneMapper.upsert(z);
-                        pageSaved++;
-                    }
+        int page = 0;
+        // 后续页由 CfClient 在后台并发拉取，当前线程按页码顺序落库
+        try (Stream<CfPage<Zone>> pages = CfApiUsage
+                .withFeature(client.listZonePages(a, ZONES_PER_PAGE, pagePrefetch), CfApiUsage.FEATURE_SYNC)
+                .toStream(pagePrefetch)) {
+            Iterator<CfPage<Zone>> it = pages.iterator();
+            while (it.hasNext()) {
+                CfPage<Zone> p = it.next();
+                page++;
+                if (!p.success) {
+                    log.warn("CF listZones error: {}", p.errors);
+                    throw new IllegalStateException("Cloudflare API 错误: " + p.errors);
                 }
-                totalSaved += pageSaved;
-                log.debug("zones sync page {} saved {}", page, pageSaved);
-                int totalPages = root.path("result_info").path("total_pages").asInt(-1);
-                boolean hasMore;
-                if (totalPages >= 1) {
-                    hasMore = page < totalPages;
-                } else {
-                    // 无 result_info 时，按是否满页判断
-                    hasMore = pageSaved == per;
+                lease.check();
+                for (Zone z : p.result) {
+                    z.setCfAccountId(cfAccountId);
+                    z.setEnabled(0);
+                    z.setSyncedAt(LocalDateTime.now());
+                    zoneMapper.upsert(z);
                 }
-                if (!hasMore || pageSaved == 0)
-                    break;
-                page++;
-            } catch (RuntimeException re) {
-                throw re;
-            } catch (Exception e) {
-                log.error("解析 Cloudflare zones 响应失败(page={}): {}", page, e.getMessage(), e);
-                throw new IllegalStateException("解析 Cloudflare 响应失败");
+                totalSaved += p.result.size();
+                log.debug("zones sync page {} saved {}", page, p.result.size());
             }
+        } catch (RuntimeException re) {
+            log.error("同步 Cloudflare zones 失败(account={}, page={}): {}", cfAccountId, page + 1, re.getMessage());
+            throw re;
+        } finally {
+            // 已写入的 zone 立即进入索引
+            zoneRegistry.refresh();
         }
         return totalSaved;
     }
@@ -94,5 +136,6 @@ public class ZoneService {
 
     public void setEnabled(Long id, boolean enabled) {
         zoneMapper.setEnabled(id, enabled ? 1 : 0);
+        zoneRegistry.refresh();
     }
 }
@@ -0,0 +1,144 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.dto.SyncDtos.SyncSummary;
+import com.domaindns.cf.dto.SyncDtos.ZoneSyncResult;
+import com.domaindns.cf.model.Zone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+
+/**
+ * 多 zone 并发同步 DNS 记录。
+ * 全局并发受 sync.concurrency 限制，单个 Cloudflare 账户同时在跑的 zone 数受
+ * sync.per-account-concurrency 限制，调度时在账户之间轮转，避免大账户占满所有槽位。
+ * 各 zone 走增量同步，到期时自动做一次全量清理。
+ */
+@Service
+public class ZoneSyncEngine {
+    private static final Logger log = LoggerFactory.getLogger(ZoneSyncEngine.class);
+    private final DnsRecordService dnsRecordService;
+    private final ZoneRegistry zoneRegistry;
+    private final Executor executor;
+    private final int concurrency;
+    private final int perAccountConcurrency;
+
+    public ZoneSyncEngine(DnsRecordService dnsRecordService, ZoneRegistry zoneRegistry,
+            @Qualifier("syncTaskExecutor") Executor executor,
+            @Value("${sync.concurrency:8}") int concurrency,
+            @Value("${sync.per-account-concurrency:4}") int perAccountConcurrency) {
+        this.dnsRecordService = dnsRecordService;
+        this.zoneRegistry = zoneRegistry;
+        this.executor = executor;
+        this.concurrency = Math.max(1, concurrency);
+        this.perAccountConcurrency = Math.max(1, perAccountConcurrency);
+    }
+
+    // 同步所有已启用 zone 的 DNS 记录
+    public SyncSummary syncEnabledZones() {
+        return syncZones(zoneRegistry.enabled(null));
+    }
+
+    public SyncSummary syncZones(List<Zone> zones) {
+        return syncZones(zones, SyncProgress.NONE);
+    }
+
+    public SyncSummary syncZones(List<Zone> zones, SyncProgress progress) {
+        long start = System.currentTimeMillis();
+        SyncSummary summary = new SyncSummary();
+        progress.start(zones == null ? 0 : zones.size());
+        if (zones == null || zones.isEmpty())
+            return summary;
+
+        // 按账户分组，保持原有顺序
+        Map<Long, Deque<Zone>> pending = new LinkedHashMap<>();
+        for (Zone z : zones)
+            pending.computeIfAbsent(z.getCfAccountId(), k -> new ArrayDeque<>()).add(z);
+        List<Long> accounts = new ArrayList<>(pending.keySet());
+        Map<Long, Integer> inFlight = new HashMap<>();
+
+        CompletionService<ZoneSyncResult> cs = new ExecutorCompletionService<>(executor);
+        int remaining = zones.size();
+        int running = 0;
+        int cursor = 0;
+        while (remaining > 0) {
+            // 按账户轮转填满可用槽位
+            while (running < concurrency) {
+                Zone next = null;
+                for (int i = 0; i < accounts.size() && next == null; i++) {
+                    Long acc = accounts.get((cursor + i) % accounts.size());
+                    Deque<Zone> q = pending.get(acc);
+                    if (!q.isEmpty() && inFlight.getOrDefault(acc, 0) < perAccountConcurrency) {
+                        next = q.poll();
+                        cursor = (cursor + i + 1) % accounts.size();
+                    }
+                }
+                if (next == null)
+                    break;
+                final Zone z = next;
+                inFlight.merge(z.getCfAccountId(), 1, Integer::sum);
+                cs.submit(() -> syncOne(z));
+                running++;
+            }
+
+            ZoneSyncResult r;
+            try {
+                r = cs.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("同步被中断");
+            } catch (ExecutionException e) {
+                // syncOne 已捕获异常，这里理论上不会发生
+                throw new IllegalStateException("同步任务异常: " + e.getCause().getMessage());
+            }
+            running--;
+            remaining--;
+            inFlight.merge(r.cfAccountId, -1, Integer::sum);
+            summary.results.add(r);
+            if (r.success) {
+                summary.succeeded++;
+                summary.upserted += r.upserted;
+                summary.deleted += r.deleted;
+            } else {
+                summary.failed++;
+            }
+            progress.step(r.success);
+        }
+        summary.zones = zones.size();
+        summary.durationMs = System.currentTimeMillis() - start;
+        log.info("DNS 记录同步完成: zones={}, succeeded={}, failed={}, upserted={}, deleted={}, {}ms",
+                summary.zones, summary.succeeded, summary.failed, summary.upserted, summary.deleted,
+                summary.durationMs);
+        return summary;
+    }
+
+    private ZoneSyncResult syncOne(Zone z) {
+        long start = System.currentTimeMillis();
+        try {
+            return dnsRecordService.syncZoneRecordsIncremental(z.getId());
+        } catch (Exception e) {
+            log.warn("同步 zone {} ({}) 失败: {}", z.getName(), z.getId(), e.getMessage());
+            ZoneSyncResult r = new ZoneSyncResult();
+            r.zoneId = z.getId();
+            r.zoneName = z.getName();
+            r.cfAccountId = z.getCfAccountId();
+            r.success = false;
+            r.error = e.getMessage();
+            r.durationMs = System.currentTimeMillis() - start;
+            return r;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.dto.SyncDtos.ZoneSyncResult;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 同一 zone 的 DNS 记录同步合并执行（single-flight）：同一 zone 已有同步在进行时，后来的调用方等待并共用其结果，
+ * 不再重复下载与写库。全量同步的结果可满足增量调用方；反之全量调用方会等在途的增量同步结束后再自己执行一次全量。
+ * 执行失败时等待方收到同样的错误。
+ * 只在本节点内合并：调用方须先持有 SyncLease，同一时刻只有持有租约的节点在同步，跨节点无需再合并。
+ */
+@Component
+public class ZoneSyncFlight {
+    private final Map<Long, Flight> flights = new ConcurrentHashMap<>();
+
+    public ZoneSyncResult run(Long zoneId, boolean full, Supplier<ZoneSyncResult> sync) {
+        while (true) {
+            Flight mine = new Flight(full);
+            Flight current = flights.putIfAbsent(zoneId, mine);
+            if (current == null) {
+                try {
+                    ZoneSyncResult r = sync.get();
+                    mine.complete(r, null);
+                    return r;
+                } catch (RuntimeException e) {
+                    mine.complete(null, e);
+                    throw e;
+                } finally {
+                    flights.remove(zoneId, mine);
+                }
+            }
+            ZoneSyncResult r = current.await();
+            if (current.full || !full)
+                return joined(r);
+            // 在途的是增量同步，全量调用方等它结束后再抢执行权
+        }
+    }
+
+    // 共用他人结果时返回副本并标记 joined，避免修改执行方的对象
+    private static ZoneSyncResult joined(ZoneSyncResult src) {
+        ZoneSyncResult r = new ZoneSyncResult();
+        r.zoneId = src.zoneId;
+        r.zoneName = src.zoneName;
+        r.cfAccountId = src.cfAccountId;
+        r.jobId = src.jobId;
+        r.mode = src.mode;
+        r.success = src.success;
+        r.durationMs = src.durationMs;
+        r.upserted = src.upserted;
+        r.deleted = src.deleted;
+        r.skipped = src.skipped;
+        r.error = src.error;
+        r.joined = true;
+        return r;
+    }
+
+    private static final class Flight {
+        final boolean full;
+        private final CompletableFuture<ZoneSyncResult> future = new CompletableFuture<>();
+
+        Flight(boolean full) {
+            this.full = full;
+        }
+
+        void complete(ZoneSyncResult r, RuntimeException error) {
+            if (error != null)
+                future.completeExceptionally(error);
+            else
+                future.complete(r);
+        }
+
+        ZoneSyncResult await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re)
+                    throw re;
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.domaindns.cf.service;
+
+import com.domaindns.cf.mapper.ZoneMapper;
+import com.domaindns.cf.model.Zone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 zone 的变更频率自适应调整定时同步间隔。
+ * 变更量 = 上次同步以来用户在本地的申请/修改/释放次数 + 本次同步实际写入/删除的记录数：
+ * 达到 sync.adaptive.hot-changes 时回到最短间隔，有变更时间隔减半，没有变更时间隔翻倍，
+ * 间隔限制在 [min-interval-seconds, max-interval-seconds] 之间。
+ * 定时任务只同步到期的 zone。本地变更在 Cloudflare 调用成功后已直接写入镜像，不会提前触发同步，只让下一个间隔变短。
+ * 状态保存在 zones 表中，多节点共享。
+ */
+@Component
+public class ZoneSyncPolicy {
+    private static final Logger log = LoggerFactory.getLogger(ZoneSyncPolicy.class);
+    private final ZoneMapper zoneMapper;
+    private final ZoneRegistry zoneRegistry;
+    private final boolean enabled;
+    private final int minSec;
+    private final int maxSec;
+    private final int hotChanges;
+
+    public ZoneSyncPolicy(ZoneMapper zoneMapper, ZoneRegistry zoneRegistry,
+            @Value("${sync.adaptive.enabled:true}") boolean enabled,
+            @Value("${sync.adaptive.min-interval-seconds:300}") int minSec,
+            @Value("${sync.adaptive.max-interval-seconds:21600}") int maxSec,
+            @Value("${sync.adaptive.hot-changes:10}") int hotChanges) {
+        this.zoneMapper = zoneMapper;
+        this.zoneRegistry = zoneRegistry;
+        this.enabled = enabled;
+        this.minSec = Math.max(1, minSec);
+        this.maxSec = Math.max(this.minSec, maxSec);
+        this.hotChanges = Math.max(1, hotChanges);
+    }
+
+    // 定时同步本轮需要处理的 zone；未启用自适应时返回全部已启用 zone
+    public List<Zone> dueZones() {
+        if (!enabled)
+            return zoneRegistry.enabled(null);
+        // 定时触发与上次同步完成时间有偏差，留半个最短间隔的容差，避免刚好错过一轮
+        List<Zone> due = new ArrayList<>();
+        for (Long id : zoneMapper.findDueIds(minSec / 2)) {
+            Zone z = zoneRegistry.byId(id);
+            if (z != null)
+                due.add(z);
+        }
+        return due;
+    }
+
+    // 用户在本地改动了该 zone 下的记录
+    public void recordLocalChange(Long zoneId) {
+        if (!enabled || zoneId == null)
+            return;
+        try {
+            zoneMapper.markChanged(zoneId);
+        } catch (RuntimeException e) {
+            // 只影响同步频率，不能让用户操作失败
+            log.warn("记录 zone {} 变更失败: {}", zoneId, e.getMessage());
+        }
+    }
+
+    // zone 同步成功后按变更量重新计算间隔与下次同步时间
+    public void afterSync(Long zoneId, int changes) {
+        if (!enabled)
+            return;
+        try {
+            zoneMapper.updateSyncSchedule(zoneId, Math.max(0, changes), hotChanges, minSec, maxSec);
+        } catch (RuntimeException e) {
+            log.warn("更新 zone {} 同步间隔失败: {}", zoneId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.domaindns.cf.stub;
+
+import com.domaindns.cf.dto.CfAccountDtos.CreateReq;
+import com.domaindns.cf.mapper.DnsRecordMapper;
+import com.domaindns.cf.mapper.ZoneMapper;
+import com.domaindns.cf.model.Zone;
+import com.domaindns.cf.service.CfAccountService;
+import com.domaindns.cf.service.DnsRecordService;
+import com.domaindns.cf.service.DomainSearchService;
+import com.domaindns.cf.service.OccupiedNameIndex;
+import com.domaindns.cf.service.ZoneRegistry;
+import com.domaindns.cf.service.ZoneService;
+import com.domaindns.user.mapper.UserDomainMapper;
+import com.domaindns.user.model.UserDomain;
+import com.domaindns.user.service.UserDomainService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Cloudflare 替身的吞吐压测。对每个规模（zone 内记录数）依次执行：
+ * zone 列表同步（ZoneService.syncByAccount）、记录全量同步（DnsRecordService.syncZoneRecords，首轮为空镜像）、
+ * 替身侧修改 1% 记录后的增量同步，以及可选的并发申请子域名（UserDomainService.applySubdomain，
+ * 分别统计受理耗时与记录实际生效的耗时）。另可按已启用 zone 数对比域名搜索逐 zone 查库与批量查询的延迟。
+ * 每项输出吞吐与 p50/p99 延迟。
+ * 压测会写入 cf_accounts / zones / dns_records / user_domains 并扣减指定用户的积分，只应在一次性的测试库上运行。
+ */
+@Component
+@ConditionalOnProperty(name = "cf.stub.enabled", havingValue = "true")
+public class CfBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(CfBenchmark.class);
+    static final String CREDENTIAL = "cf-stub-bench";
+    // 等待申请生效的轮询间隔与上限
+    private static final long APPLY_POLL_MS = 50;
+    private static final long APPLY_WAIT_MS = 10 * 60 * 1000;
+
+    private final CfStubStore store;
+    private final CfAccountService accountService;
+    private final ZoneService zoneService;
+    private final ZoneRegistry zoneRegistry;
+    private final DnsRecordService dnsRecordService;
+    private final UserDomainService userDomainService;
+    private final UserDomainMapper userDomainMapper;
+    private final ZoneMapper zoneMapper;
+    private final DnsRecordMapper dnsRecordMapper;
+    private final DomainSearchService searchService;
+    private final OccupiedNameIndex nameIndex;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "CfBenchmark");
+        t.setDaemon(true);
+        return t;
+    });
+    // 以下状态由 this 保护
+    private boolean running;
+    private Map<String, Object> last;
+
+    public CfBenchmark(CfStubStore store, CfAccountService accountService, ZoneService zoneService,
+            ZoneRegistry zoneRegistry, DnsRecordService dnsRecordService, UserDomainService userDomainService,
+            UserDomainMapper userDomainMapper, ZoneMapper zoneMapper, DnsRecordMapper dnsRecordMapper,
+            DomainSearchService searchService, OccupiedNameIndex nameIndex) {
+        this.store = store;
+        this.accountService = accountService;
+        this.zoneService = zoneService;
+        this.zoneRegistry = zoneRegistry;
+        this.dnsRecordService = dnsRecordService;
+        this.userDomainService = userDomainService;
+        this.userDomainMapper = userDomainMapper;
+        this.zoneMapper = zoneMapper;
+        this.dnsRecordMapper = dnsRecordMapper;
+        this.searchService = searchService;
+        this.nameIndex = nameIndex;
+    }
+
+    // 后台开始一轮压测，同一时间只允许一轮
+    public synchronized void start(List<Integer> sizes, int iterations, int applies, int concurrency, Long userId,
+            List<Integer> searchZones) {
+        if (running)
+            throw new IllegalArgumentException("已有压测正在运行");
+        if (applies > 0 && userId == null)
+            throw new IllegalArgumentException("申请压测需要指定 userId（需有足够积分）");
+        running = true;
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("status", "RUNNING");
+        state.put("sizes", sizes);
+        state.put("iterations", iterations);
+        state.put("applies", applies);
+        state.put("concurrency", concurrency);
+        state.put("searchZones", searchZones);
+        state.put("startedAt", LocalDateTime.now());
+        List<Map<String, Object>> rows = Collections.synchronizedList(new ArrayList<>());
+        state.put("rows", rows);
+        last = state;
+        runner.execute(() -> {
+            String error = null;
+            try {
+                Long accountId = benchAccount();
+                for (int size : sizes)
+                    runSize(accountId, size, Math.max(1, iterations), applies, Math.max(1, concurrency), userId, rows);
+                if (!searchZones.isEmpty())
+                    runSearch(accountId, searchZones, Math.max(1, iterations), rows);
+            } catch (Exception e) {
+                log.warn("压测失败: {}", e.getMessage(), e);
+                error = e.getMessage();
+            }
+            synchronized (this) {
+                state.put("status", error == null ? "SUCCESS" : "FAILED");
+                state.put("error", error);
+                state.put("finishedAt", LocalDateTime.now());
+                running = false;
+            }
+        });
+    }
+
+    public synchronized Map<String, Object> status() {
+        return last == null ? Map.of("status", "IDLE") : new LinkedHashMap<>(last);
+    }
+
+    private Long benchAccount() {
+        CreateReq req = new CreateReq();
+        req.name = "cf-stub benchmark";
+        req.email = "bench@cf-stub.local";
+        req.apiType = "API_TOKEN";
+        req.apiKey = CREDENTIAL;
+        req.enabled = true;
+        return accountService.create(req);
+    }
+
+    private void runSize(Long accountId, int size, int iterations, int applies, int concurrency, Long userId,
+            List<Map<String, Object>> rows) throws Exception {
+        String cfZoneId = store.seedZone(CREDENTIAL, "bench-" + size + ".test", size);
+        int zoneCount = store.zonesOf(CREDENTIAL).size();
+
+        List<Long> lat = new ArrayList<>();
+        for (int i = 0; i < iterations; i++)
+            lat.add(timed(() -> zoneService.syncByAccount(accountId)));
+        rows.add(row("zones-sync", size, lat, (long) zoneCount * iterations, "zones/s"));
+
+        Zone z = zoneRegistry.byCfZoneId(cfZoneId);
+        if (z == null)
+            throw new IllegalStateException("同步后未找到压测 zone " + cfZoneId);
+        zoneService.setEnabled(z.getId(), true);
+        Long zoneId = z.getId();
+
+        // 新 zone 的镜像为空：首轮为冷同步，其余轮次记录均未变化
+        long cold = timed(() -> dnsRecordService.syncZoneRecords(zoneId));
+        rows.add(row("records-full-cold", size, List.of(cold), size, "records/s"));
+        if (iterations > 1) {
+            lat = new ArrayList<>();
+            for (int i = 1; i < iterations; i++)
+                lat.add(timed(() -> dnsRecordService.syncZoneRecords(zoneId)));
+            rows.add(row("records-full-warm", size, lat, (long) size * (iterations - 1), "records/s"));
+        }
+
+        lat = new ArrayList<>();
+        int churn = Math.max(1, size / 100);
+        for (int i = 0; i < iterations; i++) {
+            store.churn(cfZoneId, churn, i);
+            lat.add(timed(() -> dnsRecordService.syncZoneRecordsIncremental(zoneId)));
+        }
+        rows.add(row("records-incremental-1pct", size, lat, (long) size * iterations, "records/s"));
+
+        if (applies > 0)
+            runApplies(zoneId, size, applies, concurrency, userId, rows);
+    }
+
+    private void runApplies(Long zoneId, int size, int applies, int concurrency, Long userId,
+            List<Map<String, Object>> rows) throws Exception {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        Map<Long, Long> submittedAt = new ConcurrentHashMap<>();
+        List<Long> enqueue = Collections.synchronizedList(new ArrayList<>());
+        long start = System.currentTimeMillis();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < applies; i++) {
+                String prefix = "b" + run + "-" + i;
+                String ip = "192.0.2." + (i % 250 + 1);
+                futures.add(pool.submit(() -> {
+                    long t0 = System.nanoTime();
+                    Long id = userDomainService.applySubdomain(userId, zoneId, prefix, "A", ip, 120, "benchmark");
+                    enqueue.add((System.nanoTime() - t0) / 1_000);
+                    submittedAt.put(id, t0);
+                    return id;
+                }));
+            }
+            for (Future<?> f : futures)
+                f.get();
+        } finally {
+            pool.shutdown();
+        }
+        long enqueueMs = System.currentTimeMillis() - start;
+        rows.add(row("apply-enqueue", size, enqueue, applies, "applies/s", enqueueMs));
+
+        // 轮询直到每个申请都不再是 PENDING，记录提交到生效的耗时
+        Map<Long, Long> pending = new HashMap<>(submittedAt);
+        List<Long> applied = new ArrayList<>();
+        int failed = 0;
+        long deadline = System.currentTimeMillis() + APPLY_WAIT_MS;
+        while (!pending.isEmpty() && System.currentTimeMillis() < deadline) {
+            for (var it = pending.entrySet().iterator(); it.hasNext();) {
+                var e = it.next();
+                UserDomain ud = userDomainMapper.findByIdAndUser(e.getKey(), userId);
+                if (ud != null && "PENDING".equals(ud.getStatus()))
+                    continue;
+                if (ud != null && "ACTIVE".equals(ud.getStatus()))
+                    applied.add((System.nanoTime() - e.getValue()) / 1_000);
+                else
+                    failed++;
+                it.remove();
+            }
+            if (!pending.isEmpty())
+                TimeUnit.MILLISECONDS.sleep(APPLY_POLL_MS);
+        }
+        Map<String, Object> r = row("apply-end-to-end", size, applied, applied.size(), "applies/s",
+                System.currentTimeMillis() - start);
+        r.put("failed", failed);
+        r.put("timedOut", pending.size());
+        rows.add(r);
+    }
+
+    /**
+     * 域名搜索：生成 max(searchZones) 个小 zone（search-{i}.test，各 10 条记录 r0..r9）并同步进库，
+     * 依次启用到各个数量，对比逐 zone 查库（原实现）、DomainSearchService 批量查库与查内存名称索引的延迟，
+ * 以及前缀全部被占用、每个 zone 给出 3 个备选时的延迟。
+     * size 为实际已启用的 zone 总数（含库中其他已启用 zone）；前缀轮流使用已占用的 r0..r9 与未占用的名称。
+     */
+    private void runSearch(Long accountId, List<Integer> searchZones, int iterations,
+            List<Map<String, Object>> rows) {
+        List<Integer> counts = new ArrayList<>(searchZones);
+        Collections.sort(counts);
+        int max = counts.get(counts.size() - 1);
+        for (Zone z : zoneRegistry.enabled("search-")) {
+            if (z.getName().endsWith(".test"))
+                zoneMapper.setEnabled(z.getId(), 0);
+        }
+        List<String> cfIds = new ArrayList<>(max);
+        for (int i = 0; i < max; i++)
+            cfIds.add(store.seedZone(CREDENTIAL, "search-" + i + ".test", 10));
+        zoneService.syncByAccount(accountId);
+
+        int enabled = 0;
+        int searchIterations = Math.max(20, iterations * 10);
+        for (int count : counts) {
+            for (; enabled < count; enabled++) {
+                Zone z = zoneRegistry.byCfZoneId(cfIds.get(enabled));
+                if (z != null)
+                    zoneMapper.setEnabled(z.getId(), 1);
+            }
+            zoneRegistry.refresh();
+            int size = zoneRegistry.enabled(null).size();
+
+            List<Long> lat = new ArrayList<>();
+            for (int i = 0; i < searchIterations; i++) {
+                String prefix = i % 2 == 0 ? "r" + (i / 2 % 10) : "free" + i;
+                lat.add(timed(() -> {
+                    for (Zone z : zoneRegistry.enabled(null))
+                        dnsRecordMapper.countByZoneAndName(z.getId(), prefix + "." + z.getName());
+                }));
+            }
+            rows.add(row("search-per-zone", size, lat, searchIterations, "searches/s"));
+
+            lat = new ArrayList<>();
+            for (int i = 0; i < searchIterations; i++) {
+                String prefix = i % 2 == 0 ? "r" + (i / 2 % 10) : "free" + i;
+                lat.add(timed(() -> searchService.searchFromDb(prefix)));
+            }
+            rows.add(row("search-batched", size, lat, searchIterations, "searches/s"));
+
+            if (!nameIndex.ready())
+                nameIndex.maintain();
+            if (nameIndex.ready()) {
+                lat = new ArrayList<>();
+                for (int i = 0; i < searchIterations; i++) {
+                    String prefix = i % 2 == 0 ? "r" + (i / 2 % 10) : "free" + i;
+                    lat.add(timed(() -> searchService.search(prefix, 0)));
+                }
+                rows.add(row("search-index", size, lat, searchIterations, "searches/s"));
+
+                // r0..r9 在每个 zone 都被占用，r1..r9 这类数字后缀建议需要跳过
+                lat = new ArrayList<>();
+                for (int i = 0; i < searchIterations; i++) {
+                    String prefix = "r" + (i % 10);
+                    lat.add(timed(() -> searchService.search(prefix, 3)));
+                }
+                rows.add(row("search-index-suggest", size, lat, searchIterations, "searches/s"));
+            }
+        }
+    }
+
+    // 返回微秒，内存查询的延迟不足 1 毫秒
+    private static long timed(Runnable work) {
+        long t0 = System.nanoTime();
+        work.run();
+        return (System.nanoTime() - t0) / 1_000;
+    }
+
+    // 串行执行的场景：总耗时即各次耗时之和；latencies 单位为微秒
+    private static Map<String, Object> row(String scenario, int size, List<Long> latencies, long ops, String unit) {
+        long total = 0;
+        for (long l : latencies)
+            total += l;
+        return row(scenario, size, latencies, ops, unit, total / 1000.0);
+    }
+
+    private static Map<String, Object> row(String scenario, int size, List<Long> latencies, long ops, String unit,
+            double totalMs) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("scenario", scenario);
+        m.put("size", size);
+        m.put("runs", sorted.size());
+        m.put("totalMs", Math.round(totalMs * 1000) / 1000.0);
+        m.put("throughput", totalMs == 0 ? null : Math.round(ops * 1000.0 / totalMs * 10) / 10.0);
+        m.put("unit", unit);
+        m.put("p50Ms", percentile(sorted, 50));
+        m.put("p99Ms", percentile(sorted, 99));
+        log.info("benchmark {} size={} runs={} total={}ms p50={}ms p99={}ms", scenario, size, sorted.size(), totalMs,
+                m.get("p50Ms"), m.get("p99Ms"));
+        return m;
+    }
+
+    // 最近秩法：不小于 p% 样本的最小值，微秒换算为毫秒（保留三位小数）
+    private static Double percentile(List<Long> sorted, int p) {
+        if (sorted.isEmpty())
+            return null;
+        int idx = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(idx, sorted.size() - 1))) / 1000.0;
+    }
+}
@@ -0,0 +1,72 @@
+package com.domaindns.cf.stub;
+
+import com.domaindns.auth.service.JwtService;
+import com.domaindns.common.ApiResponse;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/cf-stub/bench")
+@ConditionalOnProperty(name = "cf.stub.enabled", havingValue = "true")
+public class CfBenchmarkController {
+    private final CfBenchmark benchmark;
+    private final JwtService jwtService;
+
+    public CfBenchmarkController(CfBenchmark benchmark, JwtService jwtService) {
+        this.benchmark = benchmark;
+        this.jwtService = jwtService;
+    }
+
+    // 后台开始一轮压测；applies > 0 时以 userId 的身份并发申请子域名（会扣该用户积分）；
+    // searchZones 为域名搜索场景的已启用 zone 数（如 10,100,300,1000），为空时跳过
+    @PostMapping
+    public ApiResponse<Map<String, Object>> start(@RequestHeader("Authorization") String authorization,
+            @RequestParam(value = "sizes", defaultValue = "100,1000,10000,100000") List<Integer> sizes,
+            @RequestParam(value = "iterations", defaultValue = "3") Integer iterations,
+            @RequestParam(value = "applies", defaultValue = "0") Integer applies,
+            @RequestParam(value = "concurrency", defaultValue = "8") Integer concurrency,
+            @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "searchZones", required = false) List<Integer> searchZones) {
+        validateAdminAuth(authorization);
+        for (Integer s : sizes) {
+            if (s == null || s < 1 || s > 1_000_000)
+                throw new IllegalArgumentException("sizes 取值范围 1-1000000");
+        }
+        if (searchZones == null)
+            searchZones = List.of();
+        for (Integer n : searchZones) {
+            if (n == null || n < 1 || n > 10_000)
+                throw new IllegalArgumentException("searchZones 取值范围 1-10000");
+        }
+        benchmark.start(sizes, iterations, applies, concurrency, userId, searchZones);
+        return ApiResponse.ok(benchmark.status());
+    }
+
+    // 当前进度或上一轮结果
+    @GetMapping
+    public ApiResponse<Map<String, Object>> status(@RequestHeader("Authorization") String authorization) {
+        validateAdminAuth(authorization);
+        return ApiResponse.ok(benchmark.status());
+    }
+
+    private void validateAdminAuth(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            throw new RuntimeException("未登录");
+        }
+        String token = authorization.substring(7);
+        try {
+            Jws<Claims> jws = jwtService.parse(token);
+            String role = jws.getBody().get("role", String.class);
+            if (!"ADMIN".equals(role)) {
+                throw new RuntimeException("权限不足，需要管理员权限");
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Token无效或已过期");
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.domaindns.cf.stub;
+
+import com.domaindns.cf.stub.CfStubStore.StubRecord;
+import com.domaindns.cf.stub.CfStubStore.StubZone;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 本地 Cloudflare v4 API 替身，覆盖 CfClient 用到的 zones 与 dns_records 接口（含按名称查询与批量接口），
+ * 用于在不访问真实 Cloudflare 的情况下压测同步与申请流程。仅在 cf.stub.enabled=true 时加载，
+ * 同时把 cf.api-base-url 指向 http://localhost:{port}/cf-stub/client/v4。
+ * 可配置：响应延迟 cf.stub.latency-ms（加 0~latency-jitter-ms 的随机抖动）、单页上限 cf.stub.max-per-page、
+ * 随机 500 的比例 cf.stub.error-rate、每个凭证每秒请求上限 cf.stub.rate-limit-per-second（超出返回 429，0 为不限）。
+ */
+@RestController
+@RequestMapping("/cf-stub/client/v4")
+@ConditionalOnProperty(name = "cf.stub.enabled", havingValue = "true")
+public class CfStubController {
+    private static final int ZONES_MAX_PER_PAGE = 50;
+
+    private final CfStubStore store;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final int maxPerPage;
+    private final double errorRate;
+    private final int rateLimit;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // 凭证 -> [当前秒, 本秒已收到的请求数]
+    private final Map<String, long[]> windows = new ConcurrentHashMap<>();
+
+    public CfStubController(CfStubStore store,
+            @Value("${cf.stub.latency-ms:50}") long latencyMs,
+            @Value("${cf.stub.latency-jitter-ms:20}") long jitterMs,
+            @Value("${cf.stub.max-per-page:5000}") int maxPerPage,
+            @Value("${cf.stub.error-rate:0}") double errorRate,
+            @Value("${cf.stub.rate-limit-per-second:0}") int rateLimit) {
+        this.store = store;
+        this.latencyMs = Math.max(0, latencyMs);
+        this.jitterMs = Math.max(0, jitterMs);
+        this.maxPerPage = Math.max(1, maxPerPage);
+        this.errorRate = Math.max(0, Math.min(1, errorRate));
+        this.rateLimit = Math.max(0, rateLimit);
+    }
+
+    @GetMapping("/zones")
+    public Mono<ResponseEntity<String>> listZones(@RequestHeader HttpHeaders headers,
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            @RequestParam(value = "per_page", defaultValue = "20") int perPage) {
+        return respond(headers, cred -> {
+            List<ObjectNode> items = new ArrayList<>();
+            for (StubZone z : store.zonesOf(cred)) {
+                ObjectNode n = objectMapper.createObjectNode();
+                n.put("id", z.id);
+                n.put("name", z.name);
+                n.put("status", "active");
+                items.add(n);
+            }
+            return paged(items, page, Math.min(perPage, ZONES_MAX_PER_PAGE));
+        });
+    }
+
+    @GetMapping("/zones/{zoneId}/dns_records")
+    public Mono<ResponseEntity<String>> listRecords(@RequestHeader HttpHeaders headers,
+            @PathVariable("zoneId") String zoneId,
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            @RequestParam(value = "per_page", defaultValue = "100") int perPage,
+            @RequestParam(value = "name", required = false) String name) {
+        return respond(headers, cred -> {
+            StubZone z = zoneOrThrow(cred, zoneId);
+            String wanted = name == null ? null : name.toLowerCase(Locale.ROOT);
+            List<StubRecord> all = z.list();
+            int size = Math.min(Math.max(1, perPage), maxPerPage);
+            if (wanted == null) {
+                // 直接按下标截取快照，不复制整个 zone
+                int from = Math.min((Math.max(1, page) - 1) * size, all.size());
+                List<ObjectNode> items = new ArrayList<>();
+                for (StubRecord r : all.subList(from, Math.min(from + size, all.size())))
+                    items.add(recordJson(z, r));
+                return pageResult(items, page, size, all.size());
+            }
+            List<ObjectNode> items = new ArrayList<>();
+            for (StubRecord r : all) {
+                if (r.name.equals(wanted))
+                    items.add(recordJson(z, r));
+            }
+            return paged(items, page, size);
+        });
+    }
+
+    @PostMapping("/zones/{zoneId}/dns_records")
+    public Mono<ResponseEntity<String>> create(@RequestHeader HttpHeaders headers,
+            @PathVariable("zoneId") String zoneId, @RequestBody String body) {
+        return respond(headers, cred -> {
+            StubZone z = zoneOrThrow(cred, zoneId);
+            synchronized (z) {
+                StubRecord r = fromBody(null, readTree(body));
+                checkNotIdentical(z, r);
+                z.put(r);
+                return ok(recordJson(z, r));
+            }
+        });
+    }
+
+    @PutMapping("/zones/{zoneId}/dns_records/{recordId}")
+    public Mono<ResponseEntity<String>> update(@RequestHeader HttpHeaders headers,
+            @PathVariable("zoneId") String zoneId, @PathVariable("recordId") String recordId,
+            @RequestBody String body) {
+        return respond(headers, cred -> {
+            StubZone z = zoneOrThrow(cred, zoneId);
+            synchronized (z) {
+                if (z.get(recordId) == null)
+                    throw missing();
+                StubRecord r = fromBody(recordId, readTree(body));
+                z.put(r);
+                return ok(recordJson(z, r));
+            }
+        });
+    }
+
+    @DeleteMapping("/zones/{zoneId}/dns_records/{recordId}")
+    public Mono<ResponseEntity<String>> delete(@RequestHeader HttpHeaders headers,
+            @PathVariable("zoneId") String zoneId, @PathVariable("recordId") String recordId) {
+        return respond(headers, cred -> {
+            StubZone z = zoneOrThrow(cred, zoneId);
+            if (z.remove(recordId) == null)
+                throw missing();
+            ObjectNode n = objectMapper.createObjectNode();
+            n.put("id", recordId);
+            return ok(n);
+        });
+    }
+
+    // 与 Cloudflare 一致：按 deletes、puts、posts 的顺序原子执行，任何一项失败时整体不生效
+    @PostMapping("/zones/{zoneId}/dns_records/batch")
+    public Mono<ResponseEntity<String>> batch(@RequestHeader HttpHeaders headers,
+            @PathVariable("zoneId") String zoneId, @RequestBody String body) {
+        return respond(headers, cred -> {
+            StubZone z = zoneOrThrow(cred, zoneId);
+            JsonNode req = readTree(body);
+            synchronized (z) {
+                List<String> deletes = new ArrayList<>();
+                for (JsonNode d : req.path("deletes")) {
+                    String id = d.path("id").asText();
+                    if (z.get(id) == null)
+                        throw missing();
+                    deletes.add(id);
+                }
+                List<StubRecord> puts = new ArrayList<>();
+                for (JsonNode p : req.path("puts")) {
+                    String id = p.path("id").asText();
+                    if (z.get(id) == null || deletes.contains(id))
+                        throw missing();
+                    puts.add(fromBody(id, p));
+                }
+                // 新增记录与执行删除、覆盖后的记录比对是否重复
+                Set<String> keys = new HashSet<>();
+                for (StubRecord e : z.list()) {
+                    if (!deletes.contains(e.id) && puts.stream().noneMatch(p -> p.id.equals(e.id)))
+                        keys.add(identity(e));
+                }
+                for (StubRecord r : puts)
+                    keys.add(identity(r));
+                List<StubRecord> posts = new ArrayList<>();
+                for (JsonNode p : req.path("posts")) {
+                    StubRecord r = fromBody(null, p);
+                    if (!keys.add(identity(r)))
+                        throw identical();
+                    posts.add(r);
+                }
+                // 全部校验通过后再写入
+                ObjectNode result = objectMapper.createObjectNode();
+                ArrayNode delOut = result.putArray("deletes");
+                for (String id : deletes)
+                    delOut.add(recordJson(z, z.remove(id)));
+                result.putArray("patches");
+                ArrayNode putOut = result.putArray("puts");
+                for (StubRecord r : puts) {
+                    z.put(r);
+                    putOut.add(recordJson(z, r));
+                }
+                ArrayNode postOut = result.putArray("posts");
+                for (StubRecord r : posts) {
+                    z.put(r);
+                    postOut.add(recordJson(z, r));
+                }
+                return ok(result);
+            }
+        });
+    }
+
+    /*
+     * 公共处理：凭证 -> 限流 -> 随机故障 -> 业务处理，结果按配置的延迟返回（不占用线程等待）。
+     */
+    private Mono<ResponseEntity<String>> respond(HttpHeaders headers, Handler handler) {
+        Supplier<ResponseEntity<String>> work = () -> {
+            String cred = credential(headers);
+            if (cred == null)
+                return error(403, 10000, "Authentication error");
+            if (limited(cred))
+                return error(429, 971, "Please wait and consider throttling your request speed");
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)
+                return error(500, 10000, "Internal server error (cf-stub injected)");
+            try {
+                return handler.handle(cred);
+            } catch (StubError e) {
+                return error(e.status, e.code, e.getMessage());
+            }
+        };
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay == 0)
+            return Mono.fromSupplier(work);
+        return Mono.delay(Duration.ofMillis(delay)).map(t -> work.get());
+    }
+
+    private static String credential(HttpHeaders headers) {
+        String auth = headers.getFirst(HttpHeaders.AUTHORIZATION);
+        if (auth != null && auth.startsWith("Bearer "))
+            return auth.substring(7);
+        return headers.getFirst("X-Auth-Key");
+    }
+
+    private boolean limited(String cred) {
+        if (rateLimit == 0)
+            return false;
+        long now = System.currentTimeMillis() / 1000;
+        long[] w = windows.computeIfAbsent(cred, k -> new long[2]);
+        synchronized (w) {
+            if (w[0] != now) {
+                w[0] = now;
+                w[1] = 0;
+            }
+            return ++w[1] > rateLimit;
+        }
+    }
+
+    private StubZone zoneOrThrow(String cred, String zoneId) {
+        StubZone z = store.zone(cred, zoneId);
+        if (z == null)
+            throw new StubError(404, 7003,
+                    "Could not route to /zones/" + zoneId + ", perhaps your object identifier is invalid?");
+        return z;
+    }
+
+    private StubRecord fromBody(String id, JsonNode n) {
+        String type = n.path("type").asText("");
+        String name = n.path("name").asText("");
+        if (type.isEmpty() || name.isEmpty())
+            throw new StubError(400, 9000, "DNS record type and name are required");
+        StubRecord r = store.newRecord(name, type, n.path("content").asText(""), n.path("ttl").asInt(1),
+                n.path("proxied").asBoolean(false));
+        return id == null ? r : new StubRecord(id, r.name, r.type, r.content, r.ttl, r.proxied, r.modifiedOn);
+    }
+
+    private static void checkNotIdentical(StubZone z, StubRecord r) {
+        for (StubRecord e : z.list()) {
+            if (identity(e).equals(identity(r)))
+                throw identical();
+        }
+    }
+
+    private static String identity(StubRecord r) {
+        return r.name + "|" + r.type + "|" + r.content;
+    }
+
+    private static StubError identical() {
+        return new StubError(400, 81058, "An identical record already exists.");
+    }
+
+    private static StubError missing() {
+        return new StubError(404, 81044, "Record does not exist.");
+    }
+
+    private ObjectNode recordJson(StubZone z, StubRecord r) {
+        ObjectNode n = objectMapper.createObjectNode();
+        n.put("id", r.id);
+        n.put("zone_id", z.id);
+        n.put("zone_name", z.name);
+        n.put("name", r.name);
+        n.put("type", r.type);
+        n.put("content", r.content);
+        n.put("proxiable", true);
+        n.put("proxied", r.proxied);
+        n.put("ttl", r.ttl);
+        n.put("modified_on", r.modifiedOn.toString());
+        return n;
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (Exception e) {
+            throw new StubError(400, 9207, "Request body is invalid.");
+        }
+    }
+
+    private ResponseEntity<String> paged(List<ObjectNode> items, int page, int perPage) {
+        int size = Math.max(1, perPage);
+        int from = Math.min((Math.max(1, page) - 1) * size, items.size());
+        return pageResult(items.subList(from, Math.min(from + size, items.size())), page, size, items.size());
+    }
+
+    private ResponseEntity<String> pageResult(List<ObjectNode> items, int page, int perPage, int total) {
+        ObjectNode root = envelope(true);
+        root.putArray("result").addAll(items);
+        ObjectNode info = root.putObject("result_info");
+        info.put("page", Math.max(1, page));
+        info.put("per_page", perPage);
+        info.put("count", items.size());
+        info.put("total_count", total);
+        info.put("total_pages", Math.max(1, (total + perPage - 1) / perPage));
+        return json(200, root);
+    }
+
+    private ResponseEntity<String> ok(JsonNode result) {
+        ObjectNode root = envelope(true);
+        root.set("result", result);
+        return json(200, root);
+    }
+
+    private ResponseEntity<String> error(int status, int code, String message) {
+        ObjectNode root = envelope(false);
+        root.putArray("errors").addObject().put("code", code).put("message", message);
+        root.putNull("result");
+        return json(status, root);
+    }
+
+    private ObjectNode envelope(boolean success) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("success", success);
+        root.putArray("errors");
+        root.putArray("messages");
+        return root;
+    }
+
+    private static ResponseEntity<String> json(int status, JsonNode body) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body.toString());
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        ResponseEntity<String> handle(String credential);
+    }
+
+    private static final class StubError extends RuntimeException {
+        final int status;
+        final int code;
+
+        StubError(int status, int code, String message) {
+            super(message);
+            this.status = status;
+            this.code = code;
+        }
+    }
+}
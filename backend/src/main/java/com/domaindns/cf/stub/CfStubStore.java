@@ -0,0 +1,147 @@
+package com.domaindns.cf.stub;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cloudflare 替身的内存数据：按凭证（API Token 或 Global Key）划分的 zone 与 DNS 记录。
+ * 记录按 ID 有序保存，分页结果稳定；ID 按写入顺序递增。进程重启后数据清空，由 seedZone 重新生成。
+ */
+@Component
+@ConditionalOnProperty(name = "cf.stub.enabled", havingValue = "true")
+public class CfStubStore {
+    private final Map<String, StubZone> zones = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> zonesByCredential = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+
+    // 生成（或替换同名的）zone 及 records 条 A 记录，返回 zone ID
+    public synchronized String seedZone(String credential, String name, int records) {
+        List<String> ids = zonesByCredential.computeIfAbsent(credential, k -> new ArrayList<>());
+        ids.removeIf(id -> {
+            StubZone z = zones.get(id);
+            if (z != null && z.name.equals(name)) {
+                zones.remove(id);
+                return true;
+            }
+            return false;
+        });
+        StubZone z = new StubZone(UUID.randomUUID().toString().replace("-", ""), name);
+        for (int i = 0; i < records; i++) {
+            String content = "10." + ((i >> 16) & 255) + "." + ((i >> 8) & 255) + "." + (i & 255);
+            z.put(newRecord("r" + i + "." + name, "A", content, 120, false));
+        }
+        zones.put(z.id, z);
+        ids.add(z.id);
+        return z.id;
+    }
+
+    // 随机修改 count 条记录的内容，模拟 Cloudflare 侧的变更
+    public int churn(String zoneId, int count, long seed) {
+        StubZone z = zones.get(zoneId);
+        if (z == null)
+            return 0;
+        List<StubRecord> all = z.list();
+        if (all.isEmpty())
+            return 0;
+        Random rnd = new Random(seed);
+        int n = Math.min(count, all.size());
+        for (int i = 0; i < n; i++) {
+            StubRecord r = all.get(rnd.nextInt(all.size()));
+            z.put(new StubRecord(r.id, r.name, r.type, "10.255." + rnd.nextInt(256) + "." + rnd.nextInt(256), r.ttl,
+                    r.proxied, Instant.now()));
+        }
+        return n;
+    }
+
+    public List<StubZone> zonesOf(String credential) {
+        List<StubZone> out = new ArrayList<>();
+        for (String id : zonesByCredential.getOrDefault(credential, List.of())) {
+            StubZone z = zones.get(id);
+            if (z != null)
+                out.add(z);
+        }
+        return out;
+    }
+
+    // 凭证无权访问该 zone 时返回 null
+    public StubZone zone(String credential, String zoneId) {
+        List<String> ids = zonesByCredential.get(credential);
+        if (ids == null || !ids.contains(zoneId))
+            return null;
+        return zones.get(zoneId);
+    }
+
+    public StubRecord newRecord(String name, String type, String content, int ttl, boolean proxied) {
+        String id = String.format("%032x", seq.incrementAndGet());
+        return new StubRecord(id, name.toLowerCase(Locale.ROOT), type.toUpperCase(Locale.ROOT), content, ttl, proxied,
+                Instant.now());
+    }
+
+    public static final class StubZone {
+        public final String id;
+        public final String name;
+        // 读写都在 synchronized(this) 内；批量接口在外层同样锁住 zone，保证原子执行
+        private final NavigableMap<String, StubRecord> records = new TreeMap<>();
+        // 分页读取用的有序快照，写入时作废，避免每页都从头遍历
+        private List<StubRecord> snapshot;
+
+        StubZone(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public synchronized StubRecord get(String recordId) {
+            return records.get(recordId);
+        }
+
+        public synchronized void put(StubRecord r) {
+            records.put(r.id, r);
+            snapshot = null;
+        }
+
+        public synchronized StubRecord remove(String recordId) {
+            StubRecord r = records.remove(recordId);
+            snapshot = null;
+            return r;
+        }
+
+        public synchronized List<StubRecord> list() {
+            if (snapshot == null)
+                snapshot = List.copyOf(records.values());
+            return snapshot;
+        }
+    }
+
+    public static final class StubRecord {
+        public final String id;
+        public final String name;
+        public final String type;
+        public final String content;
+        public final int ttl;
+        public final boolean proxied;
+        public final Instant modifiedOn;
+
+        public StubRecord(String id, String name, String type, String content, int ttl, boolean proxied,
+                Instant modifiedOn) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.content = content;
+            this.ttl = ttl;
+            this.proxied = proxied;
+            this.modifiedOn = modifiedOn;
+        }
+    }
+}
@@ -30,7 +30,7 @@ public class EmailService {
         this.templateEngine = templateEngine;
     }
 
-    @Async
+    @Async("emailTaskExecutor")
     public void sendVerificationCode(String email, String code, String type) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -65,7 +65,7 @@ public class EmailService {
         }
     }
 
-    @Async
+    @Async("emailTaskExecutor")
     public void sendWelcomeEmail(String email, String username) {
         try {
             MimeMessage message = mailSender.createMimeMessage();
@@ -1,5 +1,6 @@
 package com.domaindns.common;
 
+import com.domaindns.cf.service.CfUnavailableException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -24,6 +25,12 @@ public class GlobalExceptionHandler {
         return ApiResponse.error(40101, ex.getMessage());
     }
 
+    // Cloudflare 熔断/超时：降级模式下写操作快速失败，前端提示稍后重试
+    @ExceptionHandler(CfUnavailableException.class)
+    public ApiResponse<Void> handleCfUnavailable(CfUnavailableException ex) {
+        return ApiResponse.error(50301, ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ApiResponse<Void> handleOther(Exception ex) {
         return ApiResponse.error(50000,
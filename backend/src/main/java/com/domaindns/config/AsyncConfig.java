@@ -1,5 +1,6 @@
 package com.domaindns.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -22,4 +23,29 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    // Cloudflare 同步专用线程池：线程数即全局并发上限，同步任务本身大部分时间在等待网络
+    @Bean(name = "syncTaskExecutor")
+    public Executor syncTaskExecutor(@Value("${sync.concurrency:8}") int concurrency) {
+        int threads = Math.max(1, concurrency);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("CfSync-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 后台同步任务（sync_jobs 批量任务）按提交顺序逐个执行，任务内部再把账户 / zone 分发到 syncTaskExecutor
+    @Bean(name = "syncJobExecutor")
+    public Executor syncJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix("SyncJob-");
+        executor.initialize();
+        return executor;
+    }
 }
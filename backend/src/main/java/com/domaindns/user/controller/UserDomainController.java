@@ -7,6 +7,7 @@ import com.domaindns.auth.service.VerificationService;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
 import java.util.Map;
 
@@ -30,8 +31,9 @@ public class UserDomainController {
         }
     }
 
+    // 申请/修改/释放只提交本地事务（Cloudflare 变更经 dns_outbox 异步应用），返回 Mono 以便数据库操作不占用请求线程
     @PostMapping("/apply")
-    public ApiResponse<Map<String, Object>> apply(@RequestHeader("Authorization") String authorization,
+    public Mono<ApiResponse<Map<String, Object>>> apply(@RequestHeader("Authorization") String authorization,
             @RequestBody Map<String, Object> body) {
         long userId = currentUserId(authorization);
         checkVerified(userId);
@@ -41,8 +43,9 @@ public class UserDomainController {
         String value = String.valueOf(body.get("value"));
         Integer ttl = body.get("ttl") == null ? null : Integer.valueOf(body.get("ttl").toString());
         String remark = body.get("remark") == null ? null : String.valueOf(body.get("remark"));
-        service.applySubdomain(userId, zoneKey, prefix, type, value, ttl, remark);
-        return ApiResponse.ok(Map.of("status", "ok"));
+        // 记录在后台应用到 Cloudflare，生效前域名状态为 PENDING
+        return service.applySubdomainAsync(userId, zoneKey, prefix, type, value, ttl, remark)
+                .map(id -> ApiResponse.ok(Map.<String, Object>of("status", "pending", "id", id)));
     }
 
     @GetMapping
@@ -55,7 +58,7 @@ public class UserDomainController {
     }
 
     @PutMapping("/{id}")
-    public ApiResponse<Map<String, Object>> update(@RequestHeader("Authorization") String authorization,
+    public Mono<ApiResponse<Map<String, Object>>> update(@RequestHeader("Authorization") String authorization,
             @PathVariable("id") Long id, @RequestBody Map<String, Object> body) {
         long userId = currentUserId(authorization);
         checkVerified(userId);
@@ -63,17 +66,16 @@ public class UserDomainController {
         String value = String.valueOf(body.get("value"));
         Integer ttl = body.get("ttl") == null ? null : Integer.valueOf(body.get("ttl").toString());
         String remark = body.get("remark") == null ? null : String.valueOf(body.get("remark"));
-        service.updateDomainRecord(userId, id, type, value, ttl, remark);
-        return ApiResponse.ok(Map.of("status", "ok"));
+        return service.updateDomainRecordAsync(userId, id, type, value, ttl, remark)
+                .thenReturn(ApiResponse.ok(Map.of("status", "pending")));
     }
 
     @DeleteMapping("/{id}")
-    public ApiResponse<Map<String, Object>> release(@RequestHeader("Authorization") String authorization,
+    public Mono<ApiResponse<Map<String, Object>>> release(@RequestHeader("Authorization") String authorization,
             @PathVariable("id") Long id) {
         long userId = currentUserId(authorization);
         checkVerified(userId);
-        service.releaseDomain(userId, id);
-        return ApiResponse.ok(Map.of("status", "ok"));
+        return service.releaseDomainAsync(userId, id).thenReturn(ApiResponse.ok(Map.of("status", "pending")));
     }
 
     private long currentUserId(String authorization) {
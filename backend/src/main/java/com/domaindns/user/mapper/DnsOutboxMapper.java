@@ -0,0 +1,45 @@
+package com.domaindns.user.mapper;
+
+import com.domaindns.user.model.DnsOutbox;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface DnsOutboxMapper {
+    int insert(DnsOutbox o);
+
+    DnsOutbox findById(@Param("id") Long id);
+
+    // 到期可执行的 PENDING 条目；同一名称只取最早的一条，前面还有未完成的条目时不取，保证按提交顺序应用
+    List<DnsOutbox> findRunnable(@Param("limit") int limit);
+
+    // PENDING -> RUNNING 并计一次尝试，写入本次领取的 token；返回 0 表示已被其他节点领取
+    int claim(@Param("id") Long id, @Param("token") String token);
+
+    // 执行中续期 locked_at，返回 0 表示已不再由该 token 持有
+    int heartbeat(@Param("id") Long id, @Param("token") String token);
+
+    // 以下只在仍由 token 持有时生效，返回 0 表示已被放回并重新领取
+    int markDone(@Param("id") Long id, @Param("token") String token);
+
+    // 回到 PENDING，delaySeconds 秒后重试
+    int markRetry(@Param("id") Long id, @Param("token") String token, @Param("delaySeconds") long delaySeconds,
+            @Param("error") String error);
+
+    int markFailed(@Param("id") Long id, @Param("token") String token, @Param("error") String error);
+
+    // 把同一 user_domain 排在 id 之后、尚未执行的条目标记为 FAILED（申请最终失败时取消其后的修改/释放）
+    int cancelAfter(@Param("id") Long id, @Param("userDomainId") Long userDomainId, @Param("error") String error);
+
+    // 领取后超过 seconds 秒仍为 RUNNING（如进程重启时中断的）放回 PENDING
+    int releaseStale(@Param("seconds") long seconds);
+
+    // FAILED -> PENDING，重新开始计数并立即执行
+    int retry(@Param("id") Long id);
+
+    List<DnsOutbox> list(@Param("status") String status, @Param("offset") int offset, @Param("size") int size);
+
+    int count(@Param("status") String status);
+}
@@ -7,7 +7,14 @@ import org.apache.ibatis.annotations.Param;
 public interface UserDomainMapper {
         int insert(@Param("userId") Long userId, @Param("zoneId") Long zoneId, @Param("dnsRecordId") Long dnsRecordId,
                         @Param("prefix") String prefix, @Param("fullDomain") String fullDomain,
-                        @Param("remark") String remark);
+                        @Param("remark") String remark, @Param("status") String status, @Param("type") String type,
+                        @Param("value") String value, @Param("ttl") Integer ttl);
+
+        com.domaindns.user.model.UserDomain findByUserAndDomain(@Param("userId") Long userId,
+                        @Param("fullDomain") String fullDomain);
+
+        // 其他用户已申请、变更尚未应用到 Cloudflare 的同名子域名数
+        int countPendingByDomain(@Param("fullDomain") String fullDomain);
 
         int countByUserAndDomain(@Param("userId") Long userId, @Param("fullDomain") String fullDomain);
 
@@ -18,10 +25,20 @@ public interface UserDomainMapper {
 
         com.domaindns.user.model.UserDomain findByIdAndUser(@Param("id") Long id, @Param("userId") Long userId);
 
+        com.domaindns.user.model.UserDomain findById(@Param("id") Long id);
+
         int updateDnsRecordId(@Param("id") Long id, @Param("dnsRecordId") Long dnsRecordId);
 
         int updateRecordInfo(@Param("id") Long id, @Param("type") String type, @Param("value") String value,
                         @Param("ttl") Integer ttl, @Param("remark") String remark);
 
+        // 变更应用结果：dns_records 关联、状态与失败原因；已提交释放（RELEASING）的保持原状态
+        int updateDnsState(@Param("id") Long id, @Param("dnsRecordId") Long dnsRecordId,
+                        @Param("status") String status, @Param("error") String error);
+
+        int updateDnsStatus(@Param("id") Long id, @Param("status") String status, @Param("error") String error);
+
+        int deleteById(@Param("id") Long id);
+
         int deleteByIdAndUser(@Param("id") Long id, @Param("userId") Long userId);
 }
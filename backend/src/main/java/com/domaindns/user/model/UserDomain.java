@@ -9,7 +9,8 @@ public class UserDomain {
     private Long dnsRecordId; // local dns_records.id
     private String subdomainPrefix;
     private String fullDomain;
-    private String status;
+    private String status; // ACTIVE / PENDING（变更尚未应用到 Cloudflare）/ FAILED
+    private String dnsError; // 最近一次变更最终失败的原因
     private String remark;
     private String recordType;
     private String recordValue;
@@ -73,6 +74,14 @@ public class UserDomain {
         this.status = status;
     }
 
+    public String getDnsError() {
+        return dnsError;
+    }
+
+    public void setDnsError(String dnsError) {
+        this.dnsError = dnsError;
+    }
+
     public String getRemark() {
         return remark;
     }
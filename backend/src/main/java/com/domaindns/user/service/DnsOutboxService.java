@@ -0,0 +1,207 @@
+package com.domaindns.user.service;
+
+import com.domaindns.auth.entity.User;
+import com.domaindns.auth.mapper.UserMapper;
+import com.domaindns.cf.mapper.DnsRecordMapper;
+import com.domaindns.cf.model.DnsRecord;
+import com.domaindns.cf.service.CfApiUsage;
+import com.domaindns.cf.service.DnsRecordService;
+import com.domaindns.cf.service.OccupiedNameIndex;
+import com.domaindns.cf.service.ZoneSyncPolicy;
+import com.domaindns.user.mapper.DnsOutboxMapper;
+import com.domaindns.user.mapper.PointsMapper;
+import com.domaindns.user.mapper.UserDomainMapper;
+import com.domaindns.user.model.DnsOutbox;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * DNS 变更 outbox（dns_outbox）。
+ * 用户申请/修改/释放子域名时，调用方在扣返积分、写 user_domains 的同一个事务里通过 enqueue 写入该名称期望的记录集合，
+ * 请求不再等待 Cloudflare；DnsOutboxWorker 随后调用 apply，把 Cloudflare 上该名称收敛到期望集合并更新镜像与 user_domains。
+ * 收敛按名称比对现状后只提交差异，重复执行结果相同，进程在任意时刻中断后重试都不会重复创建记录。
+ * 最终失败时由 fail 补偿：申请退回积分并删除 user_domains，同一域名排在其后的修改/释放一并取消；
+ * 修改标记为 FAILED；释放把 user_domains 标记为 FAILED，保留 outbox 记录供管理员重试。
+ * 释放在 Cloudflare 删除成功后才删除 user_domains 并返还积分，之前 user_domains 状态为 RELEASING。
+ */
+@Service
+public class DnsOutboxService {
+    public static final String OP_APPLY = "APPLY";
+    public static final String OP_UPDATE = "UPDATE";
+    public static final String OP_RELEASE = "RELEASE";
+    // user_domains.status：释放已提交、Cloudflare 上的记录尚未删除
+    public static final String STATUS_RELEASING = "RELEASING";
+
+    private final DnsOutboxMapper outboxMapper;
+    private final UserDomainMapper userDomainMapper;
+    private final PointsMapper pointsMapper;
+    private final UserMapper userMapper;
+    private final DnsRecordMapper dnsRecordMapper;
+    private final DnsRecordService dnsRecordService;
+    private final ZoneSyncPolicy syncPolicy;
+    private final OccupiedNameIndex nameIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DnsOutboxService(DnsOutboxMapper outboxMapper, UserDomainMapper userDomainMapper, PointsMapper pointsMapper,
+            UserMapper userMapper, DnsRecordMapper dnsRecordMapper, DnsRecordService dnsRecordService,
+            ZoneSyncPolicy syncPolicy, OccupiedNameIndex nameIndex, TransactionTemplate transactionTemplate) {
+        this.outboxMapper = outboxMapper;
+        this.userDomainMapper = userDomainMapper;
+        this.pointsMapper = pointsMapper;
+        this.userMapper = userMapper;
+        this.dnsRecordMapper = dnsRecordMapper;
+        this.dnsRecordService = dnsRecordService;
+        this.syncPolicy = syncPolicy;
+        this.nameIndex = nameIndex;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // 须在调用方的事务内调用，事务回滚时一并撤销；records 为 Cloudflare 记录 JSON，释放时为空；
+    // points 为申请扣除的积分（最终失败时返还）或释放应返还的积分（删除成功后返还）
+    public Long enqueue(String op, Long zoneId, String name, Long userId, Long userDomainId, List<String> records,
+            int points) {
+        DnsOutbox o = new DnsOutbox();
+        o.setOp(op);
+        o.setZoneId(zoneId);
+        o.setName(name);
+        o.setUserId(userId);
+        o.setUserDomainId(userDomainId);
+        o.setRecords(toJsonArray(records));
+        o.setPoints(points);
+        outboxMapper.insert(o);
+        return o.getId();
+    }
+
+    // 应用一条已领取的 outbox：Cloudflare 收敛后在本地事务内更新 user_domains 并标记完成。
+    // 执行期间已被放回并由其他执行方重新领取时整体回滚，本地变更只由后者提交一次
+    void apply(DnsOutbox o) {
+        // 申请不删除同名的其他记录；名称已被其他记录占用时 convergeAsync 抛 IllegalArgumentException，由 fail 退回
+        boolean exclusive = !OP_APPLY.equals(o.getOp());
+        List<DnsRecord> applied = CfApiUsage.withFeature(dnsRecordService
+                .convergeAsync(o.getZoneId(), o.getName(), parseRecords(o.getRecords()), exclusive),
+                o.getOp().toLowerCase(Locale.ROOT)).block();
+        transactionTemplate.executeWithoutResult(st -> {
+            if (outboxMapper.markDone(o.getId(), o.getLockToken()) == 0)
+                throw new IllegalStateException("dns_outbox " + o.getId() + " 已被重新领取，放弃本次结果");
+            if (o.getUserDomainId() != null && OP_RELEASE.equals(o.getOp())) {
+                // 申请最终失败时 user_domains 已删除并全额退回，不再返还
+                if (userDomainMapper.deleteById(o.getUserDomainId()) > 0)
+                    refundRelease(o.getUserId(), o.getUserDomainId(), o.getName(), o.getPoints());
+            } else if (o.getUserDomainId() != null) {
+                // user_domains 指向期望集合中的第一条记录（如多条 NS 的第一条）
+                Long localId = null;
+                if (applied != null && !applied.isEmpty()) {
+                    DnsRecord r = dnsRecordMapper.findByZoneAndCfRecordId(o.getZoneId(),
+                            applied.get(0).getCfRecordId());
+                    localId = r == null ? null : r.getId();
+                }
+                userDomainMapper.updateDnsState(o.getUserDomainId(), localId, "ACTIVE", null);
+            }
+        });
+        syncPolicy.recordLocalChange(o.getZoneId());
+    }
+
+    // 最终失败：补偿本地数据并标记 FAILED；已被重新领取时不做任何补偿
+    void fail(DnsOutbox o, String error) {
+        Boolean failed = transactionTemplate.execute(st -> {
+            if (outboxMapper.markFailed(o.getId(), o.getLockToken(), error) == 0)
+                return Boolean.FALSE;
+            Long udId = o.getUserDomainId();
+            if (OP_APPLY.equals(o.getOp()) && udId != null) {
+                // 用户已自行释放时 user_domains 已不存在，释放流程已返还过积分
+                if (userDomainMapper.deleteById(udId) > 0 && o.getPoints() != null && o.getPoints() > 0) {
+                    pointsMapper.adjust(o.getUserId(), o.getPoints());
+                    User u = userMapper.findById(o.getUserId());
+                    pointsMapper.insertTxn(o.getUserId(), o.getPoints(), u != null ? u.getPoints() : null,
+                            "DOMAIN_APPLY_REFUND", "申请域名 " + o.getName() + " 失败，返还 " + o.getPoints() + " 积分",
+                            udId);
+                }
+                // 该域名已不存在，其后排队的修改/释放不能再执行
+                outboxMapper.cancelAfter(o.getId(), udId, "申请失败，已取消");
+            } else if ((OP_UPDATE.equals(o.getOp()) || OP_RELEASE.equals(o.getOp())) && udId != null) {
+                userDomainMapper.updateDnsStatus(udId, "FAILED", truncate(error, 500));
+            }
+            return Boolean.TRUE;
+        });
+        // 申请失败后 PENDING 占用已撤销
+        if (Boolean.TRUE.equals(failed) && OP_APPLY.equals(o.getOp()))
+            nameIndex.refresh(o.getZoneId(), List.of(o.getName()));
+    }
+
+    public Map<String, Object> list(String status, Integer page, Integer size) {
+        int offset = (Math.max(page, 1) - 1) * Math.max(size, 1);
+        Map<String, Object> m = new HashMap<>();
+        m.put("list", outboxMapper.list(status, offset, size));
+        m.put("total", outboxMapper.count(status));
+        m.put("page", page);
+        m.put("size", size);
+        return m;
+    }
+
+    // 管理员重试失败的修改/释放；申请失败时已退回积分并删除 user_domains，不能重试，随之取消的条目同样不能重试
+    public void retry(Long id) {
+        DnsOutbox o = outboxMapper.findById(id);
+        if (o == null)
+            throw new IllegalArgumentException("记录不存在");
+        if (OP_APPLY.equals(o.getOp()))
+            throw new IllegalArgumentException("申请失败已退回积分，请让用户重新申请");
+        if (o.getUserDomainId() != null && userDomainMapper.findById(o.getUserDomainId()) == null)
+            throw new IllegalArgumentException("域名已不存在，不能重试");
+        if (outboxMapper.retry(id) == 0)
+            throw new IllegalArgumentException("只能重试失败的记录");
+        if (o.getUserDomainId() != null)
+            userDomainMapper.updateDnsStatus(o.getUserDomainId(),
+                    OP_RELEASE.equals(o.getOp()) ? STATUS_RELEASING : "PENDING", null);
+    }
+
+    // 释放返还积分，须在调用方的事务内调用
+    void refundRelease(Long userId, Long userDomainId, String fullDomain, Integer refund) {
+        if (userId == null || refund == null || refund <= 0)
+            return;
+        pointsMapper.adjust(userId, refund);
+        User u = userMapper.findById(userId);
+        pointsMapper.insertTxn(userId, refund, u != null ? u.getPoints() : null, "DOMAIN_RELEASE",
+                "释放域名 " + fullDomain + " 返还 " + refund + " 积分", userDomainId);
+    }
+
+    private String toJsonArray(List<String> records) {
+        ArrayNode arr = objectMapper.createArrayNode();
+        try {
+            if (records != null) {
+                for (String r : records)
+                    arr.add(objectMapper.readTree(r));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("记录格式错误: " + e.getOriginalMessage());
+        }
+        return arr.toString();
+    }
+
+    private List<String> parseRecords(String json) {
+        List<String> out = new ArrayList<>();
+        try {
+            for (JsonNode n : objectMapper.readTree(json))
+                out.add(n.toString());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("outbox 记录格式错误: " + e.getOriginalMessage());
+        }
+        return out;
+    }
+
+    static String truncate(String s, int max) {
+        if (s == null)
+            return null;
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+}
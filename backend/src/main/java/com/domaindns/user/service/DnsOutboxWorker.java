@@ -0,0 +1,180 @@
+package com.domaindns.user.service;
+
+import com.domaindns.user.mapper.DnsOutboxMapper;
+import com.domaindns.user.model.DnsOutbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台应用 dns_outbox：按 dns.outbox.poll-ms 轮询，有新条目提交时由 wakeUp 立即触发一轮。
+ * 每轮领取不超过空闲线程数的到期条目，交给 dns.outbox.workers 个线程执行；同一名称的条目按提交顺序逐条应用。
+ * 领取通过条件更新完成，多节点同时轮询也不会重复执行。执行期间每 stale-seconds/3 续期 locked_at，
+ * 只有持有节点停止续期（如进程退出）超过 dns.outbox.stale-seconds 的条目才会被放回；结束时按领取 token 条件更新，
+ * 万一被重新领取，旧执行方的结果整体回滚。失败按指数退避重试（dns.outbox.retry-base-seconds 起，
+ * 最长 dns.outbox.retry-max-seconds），Cloudflare 明确拒绝（IllegalArgumentException）或达到 dns.outbox.max-attempts
+ * 次后视为最终失败并补偿。
+ */
+@Component
+public class DnsOutboxWorker {
+    private static final Logger log = LoggerFactory.getLogger(DnsOutboxWorker.class);
+
+    private final DnsOutboxMapper outboxMapper;
+    private final DnsOutboxService outboxService;
+    private final int maxAttempts;
+    private final long retryBaseSeconds;
+    private final long retryMaxSeconds;
+    private final long staleSeconds;
+    private final Semaphore slots;
+    private final ExecutorService pool;
+    private final ExecutorService waker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "DnsOutbox-wake");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "DnsOutbox-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+    // 本节点正在执行的条目：id -> 领取 token
+    private final Map<Long, String> running = new ConcurrentHashMap<>();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private volatile boolean again;
+
+    public DnsOutboxWorker(DnsOutboxMapper outboxMapper, DnsOutboxService outboxService,
+            @Value("${dns.outbox.workers:4}") int workers,
+            @Value("${dns.outbox.max-attempts:10}") int maxAttempts,
+            @Value("${dns.outbox.retry-base-seconds:5}") long retryBaseSeconds,
+            @Value("${dns.outbox.retry-max-seconds:600}") long retryMaxSeconds,
+            @Value("${dns.outbox.stale-seconds:300}") long staleSeconds) {
+        this.outboxMapper = outboxMapper;
+        this.outboxService = outboxService;
+        int threads = Math.max(1, workers);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBaseSeconds = Math.max(1, retryBaseSeconds);
+        this.retryMaxSeconds = Math.max(this.retryBaseSeconds, retryMaxSeconds);
+        this.staleSeconds = Math.max(60, staleSeconds);
+        this.slots = new Semaphore(threads);
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "DnsOutbox-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long period = this.staleSeconds * 1000 / 3;
+        heartbeat.scheduleWithFixedDelay(this::renewLocks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // 事务提交后调用：不等下一轮轮询，立即处理新条目
+    public void wakeUp() {
+        waker.execute(this::poll);
+    }
+
+    @Scheduled(fixedDelayString = "${dns.outbox.poll-ms:2000}")
+    public void poll() {
+        // 已有一轮在进行时只留标记，由进行中的一轮结束后再扫一次
+        if (!polling.compareAndSet(false, true)) {
+            again = true;
+            return;
+        }
+        try {
+            do {
+                again = false;
+                drain();
+            } while (again);
+        } catch (Exception e) {
+            log.warn("轮询 dns_outbox 失败: {}", e.getMessage());
+        } finally {
+            polling.set(false);
+        }
+    }
+
+    private void drain() {
+        outboxMapper.releaseStale(staleSeconds);
+        int free = slots.availablePermits();
+        if (free == 0)
+            return;
+        for (DnsOutbox o : outboxMapper.findRunnable(free)) {
+            String token = UUID.randomUUID().toString();
+            if (outboxMapper.claim(o.getId(), token) == 0)
+                continue;
+            o.setLockToken(token);
+            running.put(o.getId(), token);
+            slots.acquireUninterruptibly();
+            pool.execute(() -> {
+                try {
+                    process(o);
+                } finally {
+                    running.remove(o.getId(), token);
+                    slots.release();
+                    // 同名的下一条此时才可执行
+                    wakeUp();
+                }
+            });
+        }
+    }
+
+    private void process(DnsOutbox o) {
+        int attempt = (o.getAttempts() == null ? 0 : o.getAttempts()) + 1;
+        try {
+            outboxService.apply(o);
+            log.debug("dns_outbox {} {} {} 已应用", o.getId(), o.getOp(), o.getName());
+        } catch (Exception e) {
+            String error = DnsOutboxService.truncate(String.valueOf(e.getMessage()), 1000);
+            try {
+                if (e instanceof IllegalArgumentException || attempt >= maxAttempts) {
+                    log.warn("dns_outbox {} {} {} 最终失败（第 {} 次）: {}", o.getId(), o.getOp(), o.getName(), attempt,
+                            error);
+                    outboxService.fail(o, error);
+                } else {
+                    long delay = backoffSeconds(attempt);
+                    log.info("dns_outbox {} {} {} 第 {} 次失败，{} 秒后重试: {}", o.getId(), o.getOp(), o.getName(),
+                            attempt, delay, error);
+                    if (outboxMapper.markRetry(o.getId(), o.getLockToken(), delay, error) == 0)
+                        log.warn("dns_outbox {} 已被重新领取，忽略本次失败", o.getId());
+                }
+            } catch (Exception ex) {
+                // 数据库也不可用时保持 RUNNING，超过 stale-seconds 后重新领取
+                log.error("dns_outbox {} 更新状态失败: {}", o.getId(), ex.getMessage());
+            }
+        }
+    }
+
+    private void renewLocks() {
+        for (Map.Entry<Long, String> e : running.entrySet()) {
+            try {
+                if (outboxMapper.heartbeat(e.getKey(), e.getValue()) == 0)
+                    log.warn("dns_outbox {} 续期失败，已不再由本节点持有", e.getKey());
+            } catch (Exception ex) {
+                log.warn("dns_outbox {} 续期失败: {}", e.getKey(), ex.getMessage());
+            }
+        }
+    }
+
+    private long backoffSeconds(int attempt) {
+        long delay = retryBaseSeconds << Math.min(attempt - 1, 20);
+        return Math.min(delay, retryMaxSeconds);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        waker.shutdownNow();
+        heartbeat.shutdownNow();
+        pool.shutdown();
+    }
+}
@@ -1,45 +1,80 @@
 package com.domaindns.user.service;
 
-import com.domaindns.cf.mapper.ZoneMapper;
 import com.domaindns.cf.model.Zone;
-import com.domaindns.cf.service.DnsRecordService;
+import com.domaindns.cf.service.OccupiedNameIndex;
+import com.domaindns.cf.service.ZoneRegistry;
 import com.domaindns.cf.mapper.DnsRecordMapper;
 import com.domaindns.auth.mapper.UserMapper;
 import com.domaindns.auth.entity.User;
 import com.domaindns.user.mapper.PointsMapper;
 import com.domaindns.user.mapper.UserDomainMapper;
+import com.domaindns.user.model.UserDomain;
 import com.domaindns.settings.SettingsService;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-
+import java.util.concurrent.Callable;
+
+/**
+ * 用户子域名的申请、修改与释放。
+ * 每个流程只做校验与一个本地事务（user_domains、积分流水与 dns_outbox 一起提交），不等待 Cloudflare；
+ * Cloudflare 上的记录由 DnsOutboxWorker 异步应用，见 DnsOutboxService。
+ * *Async 版本把数据库操作放到 boundedElastic 上执行；同名的同步方法等待异步版本完成，供管理端批处理等场景使用。
+ */
 @Service
 public class UserDomainService {
-    private final ZoneMapper zoneMapper;
+    private final ZoneRegistry zoneRegistry;
     private final PointsMapper pointsMapper;
     private final UserDomainMapper userDomainMapper;
     private final SettingsService settingsService;
     private final UserMapper userMapper;
-    private final DnsRecordService dnsRecordService;
     private final DnsRecordMapper dnsRecordMapper;
-
-    public UserDomainService(ZoneMapper zoneMapper, PointsMapper pointsMapper, UserDomainMapper userDomainMapper,
-            SettingsService settingsService, UserMapper userMapper, DnsRecordService dnsRecordService,
-            DnsRecordMapper dnsRecordMapper) {
-        this.zoneMapper = zoneMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final DnsOutboxService outboxService;
+    private final DnsOutboxWorker outboxWorker;
+    private final OccupiedNameIndex nameIndex;
+
+    public UserDomainService(ZoneRegistry zoneRegistry, PointsMapper pointsMapper, UserDomainMapper userDomainMapper,
+            SettingsService settingsService, UserMapper userMapper, DnsRecordMapper dnsRecordMapper,
+            TransactionTemplate transactionTemplate, DnsOutboxService outboxService, DnsOutboxWorker outboxWorker,
+            OccupiedNameIndex nameIndex) {
+        this.zoneRegistry = zoneRegistry;
         this.pointsMapper = pointsMapper;
         this.userDomainMapper = userDomainMapper;
         this.settingsService = settingsService;
         this.userMapper = userMapper;
-        this.dnsRecordService = dnsRecordService;
         this.dnsRecordMapper = dnsRecordMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.outboxService = outboxService;
+        this.outboxWorker = outboxWorker;
+        this.nameIndex = nameIndex;
     }
 
-    @Transactional
-    public void applySubdomain(Long userId, Object zoneIdOrKey, String prefix, String type, String value, Integer ttl,
+    public Long applySubdomain(Long userId, Object zoneIdOrKey, String prefix, String type, String value, Integer ttl,
             String remark) {
+        return applySubdomainAsync(userId, zoneIdOrKey, prefix, type, value, ttl, remark).block();
+    }
+
+    // 返回 user_domains.id；记录由 DnsOutboxWorker 异步创建，创建前状态为 PENDING
+    public Mono<Long> applySubdomainAsync(Long userId, Object zoneIdOrKey, String prefix, String type, String value,
+            Integer ttl, String remark) {
+        return onBlocking(() -> {
+            ApplyPlan p = prepareApply(userId, zoneIdOrKey, prefix, type, value, ttl);
+            Long id = transactionTemplate.execute(st -> commitApply(userId, p, remark));
+            nameIndex.addAll(p.zone.getId(), List.of(p.fullDomain));
+            outboxWorker.wakeUp();
+            return id;
+        });
+    }
+
+    private ApplyPlan prepareApply(Long userId, Object zoneIdOrKey, String prefix, String type, String value,
+            Integer ttl) {
         Zone z = resolveZone(zoneIdOrKey);
         if (z == null || z.getEnabled() == null || z.getEnabled() == 0)
             throw new IllegalArgumentException("zone 不可用");
@@ -54,7 +89,6 @@ public class UserDomainService {
         if (u.getPoints() == null || u.getPoints() < cost)
             throw new IllegalStateException("积分不足");
 
-        // 先在 Cloudflare 创建 DNS 记录，成功后再扣积分和落库
         int ttlToUse = ttl != null ? ttl : getDefaultTtl();
         validateRecord(type, value);
         String fullDomain = prefix + "." + z.getName();
@@ -62,61 +96,43 @@ public class UserDomainService {
         // 前置重复校验：同用户是否已申请过该域名
         if (userDomainMapper.countByUserAndDomain(userId, fullDomain) > 0)
             throw new IllegalArgumentException("你已申请过该子域名");
-        // Cloudflare 侧是否已有记录（本地镜像）
+        // Cloudflare 侧是否已有记录（本地镜像），以及其他用户尚未生效的申请
         // 如果是 TXT 或 NS 记录，不校验重复（因为不同服务商的验证记录名可能相同）
+        // 始终查库：名称索引可能滞后于其他节点的写入，只用于搜索
         String typeUpper = type.toUpperCase(Locale.ROOT);
         if (!"TXT".equals(typeUpper) && !"NS".equals(typeUpper)) {
-            if (dnsRecordMapper.countByZoneAndName(z.getId(), fullDomain) > 0)
+            if (dnsRecordMapper.countByZoneAndName(z.getId(), fullDomain) > 0
+                    || userDomainMapper.countPendingByDomain(fullDomain) > 0)
                 throw new IllegalArgumentException("该子域名已被占用");
         }
 
-        Long localDnsRecordId;
-        try {
-            // 特殊处理 NS 记录：如果值包含空格，拆分为多个 NS 记录
-            if ("NS".equals(typeUpper) && value != null && value.contains(" ")) {
-                // 拆分多个 NS 记录值
-                String[] nsValues = value.trim().split("\\s+");
-                if (nsValues.length == 0) {
-                    throw new IllegalArgumentException("NS 记录值不能为空");
-                }
-
-                // 创建第一个 NS 记录（作为主记录）
-                String firstNsValue = normalizeNsValue(nsValues[0]);
-                String bodyJson = buildCfRecordJson(fullDomain, type, firstNsValue, ttlToUse);
-                dnsRecordService.create(z.getId(), bodyJson);
-                localDnsRecordId = fetchLocalDnsRecordId(z.getId(), fullDomain);
-
-                // 创建其他 NS 记录（使用相同的名称，Cloudflare 会合并）
-                for (int i = 1; i < nsValues.length; i++) {
-                    String nsValue = normalizeNsValue(nsValues[i]);
-                    if (!nsValue.isEmpty()) {
-                        String additionalBodyJson = buildCfRecordJson(fullDomain, type, nsValue, ttlToUse);
-                        try {
-                            dnsRecordService.create(z.getId(), additionalBodyJson);
-                        } catch (Exception e) {
-                            // 如果创建额外的 NS 记录失败，记录日志但不影响主流程
-                            System.err.println("创建额外 NS 记录失败: " + e.getMessage());
-                        }
-                    }
-                }
-            } else {
-                // 普通记录类型，直接创建
-                String normalizedValue = "NS".equals(typeUpper) ? normalizeNsValue(value) : value;
-                String bodyJson = buildCfRecordJson(fullDomain, type, normalizedValue, ttlToUse);
-                dnsRecordService.create(z.getId(), bodyJson);
-                localDnsRecordId = fetchLocalDnsRecordId(z.getId(), fullDomain);
-            }
-        } catch (Exception e) {
-            throw new IllegalStateException("创建 DNS 记录失败: " + e.getMessage());
-        }
+        ApplyPlan p = new ApplyPlan();
+        p.zone = z;
+        p.cost = cost;
+        p.prefix = prefix;
+        p.fullDomain = fullDomain;
+        p.type = type;
+        p.value = value;
+        p.ttl = ttlToUse;
+        p.posts.addAll(buildRecords(fullDomain, type, value, ttlToUse));
+        return p;
+    }
 
-        userDomainMapper.insert(userId, z.getId(), localDnsRecordId, prefix, fullDomain, remark);
+    // 写入 user_domains（PENDING）、扣积分并写入 outbox，三者在同一个事务内
+    private Long commitApply(Long userId, ApplyPlan p, String remark) {
+        userDomainMapper.insert(userId, p.zone.getId(), null, p.prefix, p.fullDomain, remark, "PENDING", p.type,
+                p.value, p.ttl);
+        UserDomain ud = userDomainMapper.findByUserAndDomain(userId, p.fullDomain);
 
         // 扣积分并记录流水
-        pointsMapper.adjust(userId, -cost);
+        pointsMapper.adjust(userId, -p.cost);
         User updatedUser = userMapper.findById(userId);
-        pointsMapper.insertTxn(userId, -cost, updatedUser != null ? updatedUser.getPoints() : null, "DOMAIN_APPLY",
-                "申请域名 " + fullDomain + " 扣除 " + cost + " 积分", null);
+        pointsMapper.insertTxn(userId, -p.cost, updatedUser != null ? updatedUser.getPoints() : null, "DOMAIN_APPLY",
+                "申请域名 " + p.fullDomain + " 扣除 " + p.cost + " 积分", ud.getId());
+
+        outboxService.enqueue(DnsOutboxService.OP_APPLY, p.zone.getId(), p.fullDomain, userId, ud.getId(), p.posts,
+                p.cost);
+        return ud.getId();
     }
 
     public Map<String, Object> listUserDomains(Long userId, Integer page, Integer size) {
@@ -131,160 +147,75 @@ public class UserDomainService {
         return m;
     }
 
-    @Transactional
     public void updateDomainRecord(Long userId, Long id, String type, String value, Integer ttl, String remark) {
-        com.domaindns.user.model.UserDomain ud = userDomainMapper.findByIdAndUser(id, userId);
-        if (ud == null)
-            throw new IllegalArgumentException("记录不存在");
-
-        // 验证记录类型和值
-        validateRecord(type, value);
-
-        Zone z = zoneMapper.findById(ud.getZoneId());
-        if (z == null) {
-            throw new IllegalArgumentException("域名区域不存在");
-        }
-
-        int ttlToUse = ttl != null ? ttl : getDefaultTtl();
-        String typeUpper = type.toUpperCase(Locale.ROOT);
-
-        // 获取所有现有记录
-        java.util.List<com.domaindns.cf.model.DnsRecord> existingRecords = dnsRecordMapper
-                .findAllByZoneAndName(z.getId(), ud.getFullDomain());
-
-        // 策略：如果是 NS 记录或者现有记录多于1条，则采取"全删全建"策略
-        // 否则（普通记录且只有1条），采取"更新"策略
-
-        boolean isNsUpdate = "NS".equals(typeUpper);
-        boolean hasMultipleExisting = existingRecords != null && existingRecords.size() > 1;
-
-        if (isNsUpdate || hasMultipleExisting) {
-            // 1. 删除所有现有记录
-            // 先断开外键关联，防止删除记录时报错
-            userDomainMapper.updateDnsRecordId(ud.getId(), null);
-
-            if (existingRecords != null) {
-                for (com.domaindns.cf.model.DnsRecord r : existingRecords) {
-                    try {
-                        dnsRecordService.delete(z.getId(), r.getCfRecordId());
-                    } catch (Exception ignored) {
-                    }
-                    dnsRecordMapper.deleteByZoneAndCfRecordId(z.getId(), r.getCfRecordId());
-                }
-            }
-
-            // 2. 创建新记录
-            Long newMainRecordId = null;
-
-            if (isNsUpdate && value.contains(" ")) {
-                // NS 记录拆分
-                String[] nsValues = value.trim().split("\\s+");
-                for (int i = 0; i < nsValues.length; i++) {
-                    String nsVal = normalizeNsValue(nsValues[i]);
-                    if (!nsVal.isEmpty()) {
-                        String bodyJson = buildCfRecordJson(ud.getFullDomain(), type, nsVal, ttlToUse);
-                        try {
-                            dnsRecordService.create(z.getId(), bodyJson);
-                            // 如果是第一个记录，获取ID用于更新 UserDomain
-                            if (newMainRecordId == null) {
-                                newMainRecordId = fetchLocalDnsRecordId(z.getId(), ud.getFullDomain());
-                            }
-                        } catch (Exception e) {
-                            throw new IllegalStateException("创建 NS 记录失败: " + e.getMessage());
-                        }
-                    }
-                }
-            } else {
-                // 单条记录创建 (A, CNAME, etc. or Single NS)
-                String val = isNsUpdate ? normalizeNsValue(value) : value;
-                String bodyJson = buildCfRecordJson(ud.getFullDomain(), type, val, ttlToUse);
-                try {
-                    dnsRecordService.create(z.getId(), bodyJson);
-                    newMainRecordId = fetchLocalDnsRecordId(z.getId(), ud.getFullDomain());
-                } catch (Exception e) {
-                    throw new IllegalStateException("创建记录失败: " + e.getMessage());
-                }
-            }
-
-            // 3. 更新 UserDomain 指向新的主记录
-            if (newMainRecordId != null) {
-                userDomainMapper.updateDnsRecordId(ud.getId(), newMainRecordId);
-            }
-
-        } else {
-            // 现有记录0或1条，且非NS拆分情况 -> 尝试更新
-            com.domaindns.cf.model.DnsRecord dnsRecord = null;
-            if (existingRecords != null && !existingRecords.isEmpty()) {
-                dnsRecord = existingRecords.get(0);
-            }
+        updateDomainRecordAsync(userId, id, type, value, ttl, remark).block();
+    }
 
-            if (dnsRecord != null) {
-                // 更新Cloudflare记录
-                String bodyJson = buildCfRecordJson(ud.getFullDomain(), type, value, ttlToUse);
-                try {
-                    dnsRecordService.update(dnsRecord.getZoneId(), dnsRecord.getCfRecordId(), bodyJson);
-                } catch (Exception e) {
-                    throw new IllegalStateException("更新DNS记录失败: " + e.getMessage());
-                }
-            } else {
-                // 理论上不应该发生（记录不存在但UserDomain存在），但作为兜底创建
-                String bodyJson = buildCfRecordJson(ud.getFullDomain(), type, value, ttlToUse);
-                try {
-                    dnsRecordService.create(z.getId(), bodyJson);
-                    Long newId = fetchLocalDnsRecordId(z.getId(), ud.getFullDomain());
-                    userDomainMapper.updateDnsRecordId(ud.getId(), newId);
-                } catch (Exception e) {
-                    throw new IllegalStateException("创建DNS记录失败: " + e.getMessage());
-                }
+    // 该名称的记录由 DnsOutboxWorker 异步改为新值（多余的同名记录一并删除），完成前状态为 PENDING
+    public Mono<Void> updateDomainRecordAsync(Long userId, Long id, String type, String value, Integer ttl,
+            String remark) {
+        return onBlocking(() -> {
+            UserDomain ud = userDomainMapper.findByIdAndUser(id, userId);
+            if (ud == null)
+                throw new IllegalArgumentException("记录不存在");
+            if (DnsOutboxService.STATUS_RELEASING.equals(ud.getStatus()))
+                throw new IllegalArgumentException("域名正在释放中，不能修改");
+
+            // 验证记录类型和值
+            validateRecord(type, value);
+
+            Zone z = zoneRegistry.byId(ud.getZoneId());
+            if (z == null) {
+                throw new IllegalArgumentException("域名区域不存在");
             }
-        }
-
-        // 更新本地记录信息 (remark)
-        userDomainMapper.updateRecordInfo(id, type, value, ttl, remark);
+            int ttlToUse = ttl != null ? ttl : getDefaultTtl();
+            List<String> records = buildRecords(ud.getFullDomain(), type, value, ttlToUse);
+            transactionTemplate.executeWithoutResult(st -> {
+                userDomainMapper.updateRecordInfo(id, type, value, ttlToUse, remark);
+                outboxService.enqueue(DnsOutboxService.OP_UPDATE, z.getId(), ud.getFullDomain(), userId, id, records,
+                        0);
+            });
+            outboxWorker.wakeUp();
+            return Boolean.TRUE;
+        }).then();
     }
 
-    @Transactional
     public void releaseDomain(Long userId, Long id) {
-        com.domaindns.user.model.UserDomain ud = userDomainMapper.findByIdAndUser(id, userId);
-        if (ud == null)
-            throw new IllegalArgumentException("记录不存在");
-
-        Zone zForDelete = zoneMapper.findById(ud.getZoneId());
-        if (zForDelete != null) {
-            // 查找所有相关的DNS记录（特别是针对专属域名NS记录，可能有多条）
-            java.util.List<com.domaindns.cf.model.DnsRecord> records = dnsRecordMapper
-                    .findAllByZoneAndName(zForDelete.getId(), ud.getFullDomain());
-
-            // 先断开外键，避免删除 dns_records 时违反约束
-            userDomainMapper.updateDnsRecordId(ud.getId(), null);
-
-            if (records != null && !records.isEmpty()) {
-                for (com.domaindns.cf.model.DnsRecord r : records) {
-                    try {
-                        dnsRecordService.delete(zForDelete.getId(), r.getCfRecordId());
-                    } catch (Exception ignored) {
-                    }
-                    dnsRecordMapper.deleteByZoneAndCfRecordId(zForDelete.getId(), r.getCfRecordId());
-                }
-            } else {
-                // 如果没有找到记录，尝试按名称兜底清理
-                dnsRecordMapper.deleteByZoneAndName(zForDelete.getId(), ud.getFullDomain());
-            }
-        }
+        releaseDomainAsync(userId, id).block();
+    }
 
-        // 删除 user_domain
-        userDomainMapper.deleteByIdAndUser(id, userId);
+    // 标记为 RELEASING，该名称的记录由 DnsOutboxWorker 异步删除，删除成功后才删除 user_domains 并返还积分
+    public Mono<Void> releaseDomainAsync(Long userId, Long id) {
+        return onBlocking(() -> {
+            UserDomain ud = userDomainMapper.findByIdAndUser(id, userId);
+            if (ud == null)
+                throw new IllegalArgumentException("记录不存在");
+            if (DnsOutboxService.STATUS_RELEASING.equals(ud.getStatus()))
+                throw new IllegalArgumentException("域名正在释放中");
+            Zone z = zoneRegistry.byId(ud.getZoneId());
+            transactionTemplate.executeWithoutResult(st -> commitRelease(userId, ud, z));
+            outboxWorker.wakeUp();
+            return Boolean.TRUE;
+        }).then();
+    }
 
+    private void commitRelease(Long userId, UserDomain ud, Zone zone) {
         // 返还 50% 创建时消耗的积分（按当前规则重算成本的一半）
-        Zone z = zoneMapper.findById(ud.getZoneId());
         int baseCost = getBaseCost();
-        double multiplier = z != null ? tldMultiplier(z.getName()) : 1.0;
+        double multiplier = zone != null ? tldMultiplier(zone.getName()) : 1.0;
         int cost = (int) Math.ceil(baseCost * multiplier);
         int refund = Math.max(1, cost / 2);
-        pointsMapper.adjust(userId, refund);
-        User updatedUser = userMapper.findById(userId);
-        pointsMapper.insertTxn(userId, refund, updatedUser != null ? updatedUser.getPoints() : null, "DOMAIN_RELEASE",
-                "释放域名 " + ud.getFullDomain() + " 返还 " + refund + " 积分", id);
+
+        if (zone != null) {
+            // Cloudflare 上的记录删除成功后由 DnsOutboxService.apply 删除 user_domain 并返还积分
+            userDomainMapper.updateDnsStatus(ud.getId(), DnsOutboxService.STATUS_RELEASING, null);
+            outboxService.enqueue(DnsOutboxService.OP_RELEASE, zone.getId(), ud.getFullDomain(), userId, ud.getId(),
+                    List.of(), refund);
+            return;
+        }
+        // zone 已不存在时没有需要删除的记录，直接清理本地数据
+        userDomainMapper.deleteByIdAndUser(ud.getId(), userId);
+        outboxService.refundRelease(userId, ud.getId(), ud.getFullDomain(), refund);
     }
 
     private Zone resolveZone(Object zoneIdOrKey) {
@@ -292,14 +223,14 @@ public class UserDomainService {
             return null;
         try {
             Long id = Long.valueOf(zoneIdOrKey.toString());
-            return zoneMapper.findById(id);
+            return zoneRegistry.byId(id);
         } catch (NumberFormatException ignore) {
         }
         String s = zoneIdOrKey.toString();
-        Zone z = zoneMapper.findByCfZoneId(s);
+        Zone z = zoneRegistry.byCfZoneId(s);
         if (z != null)
             return z;
-        return zoneMapper.findByName(s);
+        return zoneRegistry.byName(s);
     }
 
     private int getBaseCost() {
@@ -323,9 +254,38 @@ public class UserDomainService {
         return 1.0;
     }
 
-    private Long fetchLocalDnsRecordId(Long zoneId, String fullDomain) {
-        com.domaindns.cf.model.DnsRecord r = dnsRecordMapper.findOneByZoneAndName(zoneId, fullDomain);
-        return r == null ? null : r.getId();
+    private static <T> Mono<T> onBlocking(Callable<T> task) {
+        return Mono.fromCallable(task).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static final class ApplyPlan {
+        Zone zone;
+        String prefix;
+        String fullDomain;
+        String type;
+        String value;
+        int ttl;
+        int cost;
+        final List<String> posts = new ArrayList<>();
+    }
+
+    // 期望的 Cloudflare 记录：NS 记录值包含空格时拆分为多条，第一条作为主记录
+    private List<String> buildRecords(String name, String type, String value, int ttl) {
+        List<String> records = new ArrayList<>();
+        String typeUpper = type.toUpperCase(Locale.ROOT);
+        if ("NS".equals(typeUpper) && value != null && value.contains(" ")) {
+            for (String nsValue : value.trim().split("\\s+")) {
+                String normalized = normalizeNsValue(nsValue);
+                if (!normalized.isEmpty())
+                    records.add(buildCfRecordJson(name, type, normalized, ttl));
+            }
+            if (records.isEmpty())
+                throw new IllegalArgumentException("NS 记录值不能为空");
+        } else {
+            String normalizedValue = "NS".equals(typeUpper) ? normalizeNsValue(value) : value;
+            records.add(buildCfRecordJson(name, type, normalizedValue, ttl));
+        }
+        return records;
     }
 
     private String buildCfRecordJson(String name, String type, String value, Integer ttl) {